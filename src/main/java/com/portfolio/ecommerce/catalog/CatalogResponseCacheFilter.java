@@ -0,0 +1,184 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import com.portfolio.ecommerce.event.ProductsImportedEvent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the encoded JSON of the hottest anonymous catalog reads, product lists and the category
+ * list, and replays the bytes straight to the servlet output stream. Misses go through the
+ * controller as usual and the response is captured on the way out. Any product or category write
+ * drops every entry, and a short TTL bounds staleness from stock changes and from writes made on
+ * other instances.
+ */
+@Component
+@Slf4j
+public class CatalogResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final Pattern CACHEABLE_PATH =
+        Pattern.compile("/api/products|/api/products/category/\\d+|/api/categories");
+    private static final int MIN_GZIP_BYTES = 1024;
+
+    private final Cache<String, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogResponseCacheFilter(@Value("${catalog.response-cache.max-bytes:67108864}") long maxBytes,
+                                      @Value("${catalog.response-cache.ttl:30s}") Duration ttl) {
+        this.entries = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Entry entry) -> entry.weight())
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod())
+            || request.getHeader(HttpHeaders.AUTHORIZATION) != null
+            || !CACHEABLE_PATH.matcher(request.getRequestURI().substring(request.getContextPath().length())).matches()
+            || cacheKey(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String key = cacheKey(request);
+        Entry cached = entries.getIfPresent(key);
+        if (cached != null) {
+            write(cached, request, response);
+            return;
+        }
+
+        long generationBefore = generation.get();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+
+        // Only plain 200s are shared, and only if no write landed while the body was being built
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK && wrapper.getHeader(HttpHeaders.CONTENT_ENCODING) == null
+                && generation.get() == generationBefore) {
+            byte[] body = wrapper.getContentAsByteArray();
+            Entry entry = new Entry(body, body.length >= MIN_GZIP_BYTES ? gzip(body) : null, wrapper.getContentType(),
+                wrapper.getHeader(HttpHeaders.ETAG), parseDate(wrapper.getHeader(HttpHeaders.LAST_MODIFIED)),
+                wrapper.getHeader(HttpHeaders.CACHE_CONTROL));
+            if (generation.get() == generationBefore) {
+                entries.put(key, entry);
+            }
+        }
+        // Later requests for this path may be served the gzipped copy, so shared caches must key
+        // on Accept-Encoding from the first response on
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        wrapper.copyBodyToResponse();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // Checkouts would otherwise empty the cache on every order; the TTL bounds stale stock
+        if (!event.isStockOnly()) {
+            invalidateAll();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        invalidateAll();
+    }
+
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    private void write(Entry entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (entry.cacheControl() != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, entry.cacheControl());
+        }
+        if (entry.etag() != null
+                && new ServletWebRequest(request, response).checkNotModified(entry.etag(), entry.lastModified())) {
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.contentType());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        byte[] bytes = entry.body();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (entry.gzipped() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            bytes = entry.gzipped();
+        }
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    /**
+     * Null when the query string has anything besides an optional active flag, so unexpected
+     * parameters can never be served a response built for different ones.
+     */
+    private static String cacheKey(HttpServletRequest request) {
+        Map<String, String[]> parameters = request.getParameterMap();
+        String[] active = parameters.get("active");
+        if (parameters.size() > (active != null ? 1 : 0) || (active != null && active.length != 1)) {
+            return null;
+        }
+        return request.getRequestURI() + (active != null ? "?active=" + active[0] : "");
+    }
+
+    private static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return -1;
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private record Entry(byte[] body, byte[] gzipped, String contentType, String etag, long lastModified,
+                         String cacheControl) {
+
+        private int weight() {
+            return body.length + (gzipped != null ? gzipped.length : 0);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.config.CacheConfig;
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+
+/**
+ * Refreshes the product read cache once a product write has committed, so a concurrent reader
+ * can never re-populate it with the pre-commit row.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCacheUpdater {
+
+    private final CacheManager cacheManager;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (cache == null) {
+            return;
+        }
+        if (event.isDeleted()) {
+            cache.evict(event.getProductId());
+        } else {
+            cache.put(event.getProductId(), event.getProduct());
+        }
+    }
+
+    /**
+     * Cached products embed their category's name, so a category write evicts that category's
+     * products. Caches that cannot be scanned are cleared instead.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (cache == null || event.isDeleted()) {
+            return;
+        }
+        if (cache instanceof CaffeineCache caffeineCache) {
+            caffeineCache.getNativeCache().asMap().values().removeIf(value -> value instanceof ProductResponse product
+                && Objects.equals(product.getCategoryId(), event.getCategoryId()));
+        } else {
+            cache.clear();
+        }
+    }
+}
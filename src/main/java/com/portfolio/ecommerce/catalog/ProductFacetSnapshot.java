@@ -0,0 +1,267 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.dto.ProductFacetResponse;
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar, read-optimized copy of the product table used for faceted filtering. Each product is
+ * a row index into primitive arrays, and category, active and in-stock membership are kept as
+ * bitsets, so a facet request is one pass over the candidate rows with no object allocation.
+ * Deleted rows are cleared from the bitsets and their slots are reused by later inserts.
+ */
+@Component
+@Slf4j
+public class ProductFacetSnapshot {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_CATEGORY = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] priceCents = new long[INITIAL_CAPACITY];
+    private int[] stockQuantities = new int[INITIAL_CAPACITY];
+    private int[] categoryIndexes = new int[INITIAL_CAPACITY];
+    private final BitSet live = new BitSet();
+    private final BitSet active = new BitSet();
+    private final BitSet inStock = new BitSet();
+    private final List<BitSet> categoryRows = new ArrayList<>();
+    private final List<Long> categoryIds = new ArrayList<>();
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<Long, Integer> categoryIndexById = new HashMap<>();
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private int rowCount;
+    private long minPriceCents = Long.MAX_VALUE;
+    private long maxPriceCents = Long.MIN_VALUE;
+
+    public void rebuild(Collection<ProductResponse> products) {
+        lock.writeLock().lock();
+        try {
+            ids = new long[Math.max(INITIAL_CAPACITY, products.size())];
+            priceCents = new long[ids.length];
+            stockQuantities = new int[ids.length];
+            categoryIndexes = new int[ids.length];
+            live.clear();
+            active.clear();
+            inStock.clear();
+            categoryRows.clear();
+            categoryIds.clear();
+            categoryNames.clear();
+            categoryIndexById.clear();
+            rowById.clear();
+            rowCount = 0;
+            minPriceCents = Long.MAX_VALUE;
+            maxPriceCents = Long.MIN_VALUE;
+            products.forEach(this::upsertRow);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product facet snapshot built with {} rows", products.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                removeRow(event.getProductId());
+            } else {
+                upsertRow(event.getProduct());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer index = categoryIndexById.get(event.getCategoryId());
+            if (index != null) {
+                categoryNames.set(index, event.getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts active products matching the filters. Category counts ignore the category filter
+     * itself, as usual for facets, so the client can show how many products each sibling holds.
+     */
+    public ProductFacetResponse facets(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                       boolean inStockOnly, int bucketCount) {
+        lock.readLock().lock();
+        try {
+            long low = minPrice != null ? toCents(minPrice) : Long.MIN_VALUE;
+            long high = maxPrice != null ? toCents(maxPrice) : Long.MAX_VALUE;
+            BitSet selectedCategory = null;
+            if (categoryId != null) {
+                Integer index = categoryIndexById.get(categoryId);
+                selectedCategory = index != null ? categoryRows.get(index) : new BitSet();
+            }
+
+            // Without explicit bounds the histogram spans every price seen; deletes never shrink
+            // that range, which only widens buckets slightly until the next rebuild
+            boolean hasPrices = minPriceCents <= maxPriceCents;
+            long histogramLow = minPrice != null ? low : (hasPrices ? minPriceCents : 0L);
+            long histogramHigh = maxPrice != null ? high : (hasPrices ? maxPriceCents : 0L);
+            long bucketWidth = Math.max(1, (histogramHigh - histogramLow + bucketCount) / bucketCount);
+
+            BitSet candidates = (BitSet) active.clone();
+            if (inStockOnly) {
+                candidates.and(inStock);
+            }
+
+            int[] categoryCounts = new int[categoryIds.size()];
+            long[] bucketCounts = new long[bucketCount];
+            long total = 0;
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                long price = priceCents[row];
+                if (price < low || price > high) {
+                    continue;
+                }
+                int category = categoryIndexes[row];
+                if (category != NO_CATEGORY) {
+                    categoryCounts[category]++;
+                }
+                if (selectedCategory != null && !selectedCategory.get(row)) {
+                    continue;
+                }
+                total++;
+                int bucket = (int) Math.min(bucketCount - 1, Math.max(0, (price - histogramLow) / bucketWidth));
+                bucketCounts[bucket]++;
+            }
+
+            List<ProductFacetResponse.CategoryFacet> categories = new ArrayList<>();
+            for (int i = 0; i < categoryCounts.length; i++) {
+                if (categoryCounts[i] > 0) {
+                    categories.add(new ProductFacetResponse.CategoryFacet(
+                        categoryIds.get(i), categoryNames.get(i), (long) categoryCounts[i]));
+                }
+            }
+
+            List<ProductFacetResponse.PriceBucket> histogram = new ArrayList<>();
+            if (histogramLow <= histogramHigh) {
+                for (int i = 0; i < bucketCount; i++) {
+                    long from = histogramLow + i * bucketWidth;
+                    histogram.add(new ProductFacetResponse.PriceBucket(
+                        fromCents(from), fromCents(from + bucketWidth), bucketCounts[i]));
+                }
+            }
+
+            return ProductFacetResponse.builder()
+                .total(total)
+                .categories(categories)
+                .priceHistogram(histogram)
+                .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void upsertRow(ProductResponse product) {
+        Integer existing = rowById.get(product.getId());
+        int row;
+        if (existing != null) {
+            row = existing;
+            int previousCategory = categoryIndexes[row];
+            if (previousCategory != NO_CATEGORY) {
+                categoryRows.get(previousCategory).clear(row);
+            }
+        } else {
+            int free = live.nextClearBit(0);
+            row = free < rowCount ? free : rowCount++;
+            ensureCapacity(row + 1);
+            rowById.put(product.getId(), row);
+        }
+
+        long price = product.getPrice() != null ? toCents(product.getPrice()) : 0L;
+        int stock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+        int category = categoryIndex(product.getCategoryId(), product.getCategoryName());
+
+        ids[row] = product.getId();
+        priceCents[row] = price;
+        stockQuantities[row] = stock;
+        categoryIndexes[row] = category;
+        live.set(row);
+        active.set(row, Boolean.TRUE.equals(product.getActive()));
+        inStock.set(row, stock > 0);
+        if (category != NO_CATEGORY) {
+            categoryRows.get(category).set(row);
+        }
+        minPriceCents = Math.min(minPriceCents, price);
+        maxPriceCents = Math.max(maxPriceCents, price);
+    }
+
+    private void removeRow(Long productId) {
+        Integer row = rowById.remove(productId);
+        if (row == null) {
+            return;
+        }
+        live.clear(row);
+        active.clear(row);
+        inStock.clear(row);
+        if (categoryIndexes[row] != NO_CATEGORY) {
+            categoryRows.get(categoryIndexes[row]).clear(row);
+        }
+        categoryIndexes[row] = NO_CATEGORY;
+    }
+
+    private int categoryIndex(Long categoryId, String categoryName) {
+        if (categoryId == null) {
+            return NO_CATEGORY;
+        }
+        Integer index = categoryIndexById.get(categoryId);
+        if (index == null) {
+            index = categoryIds.size();
+            categoryIds.add(categoryId);
+            categoryNames.add(categoryName);
+            categoryRows.add(new BitSet());
+            categoryIndexById.put(categoryId, index);
+        } else if (categoryName != null) {
+            categoryNames.set(index, categoryName);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(size, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        stockQuantities = Arrays.copyOf(stockQuantities, capacity);
+        categoryIndexes = Arrays.copyOf(categoryIndexes, capacity);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
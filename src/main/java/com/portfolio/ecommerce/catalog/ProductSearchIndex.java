@@ -0,0 +1,265 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over active products' name, SKU and description, ranked with BM25.
+ * Query terms also match indexed terms they are a prefix of, which keeps the "lap" finds
+ * "Laptop" behaviour of the old LIKE search.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+    public enum Operator { AND, OR }
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int SKU_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IndexedProduct> documents = new HashMap<>();
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private long totalLength;
+
+    public void rebuild(Collection<ProductResponse> products) {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            totalLength = 0;
+            products.forEach(this::addDocument);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index built with {} products and {} terms", documents.size(), postings.size());
+    }
+
+    public void index(ProductResponse product) {
+        lock.writeLock().lock();
+        try {
+            IndexedProduct existing = documents.get(product.getId());
+            if (existing != null && Boolean.TRUE.equals(product.getActive()) && sameText(existing.product, product)) {
+                // Nothing searchable changed, so the postings stay; hits just return the new copy
+                documents.put(product.getId(), new IndexedProduct(product, existing.length, existing.terms));
+                return;
+            }
+            removeDocument(product.getId());
+            addDocument(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            index(event.getProduct());
+        }
+    }
+
+    /**
+     * Hits are returned as indexed, so a renamed category is written into the copies of its
+     * products. Category names are not searchable, the postings stay as they are.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            documents.replaceAll((id, indexed) -> {
+                ProductResponse product = indexed.product;
+                if (!Objects.equals(product.getCategoryId(), event.getCategoryId())
+                        || Objects.equals(product.getCategoryName(), event.getName())) {
+                    return indexed;
+                }
+                return new IndexedProduct(product.toBuilder().categoryName(event.getName()).build(),
+                    indexed.length, indexed.terms);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductResponse> search(String query, Operator operator, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit < 1) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documents.size();
+            Map<Long, Double> scores = new HashMap<>();
+            Map<Long, Integer> matchedTerms = new HashMap<>();
+
+            for (String term : terms) {
+                // Best score per document across every indexed term this query term expands to
+                Map<Long, Double> termScores = new HashMap<>();
+                int expansions = 0;
+                for (Map.Entry<String, Map<Long, Integer>> entry
+                        : postings.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+                    if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    Map<Long, Integer> posting = entry.getValue();
+                    double idf = Math.log(1 + (documents.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+                    for (Map.Entry<Long, Integer> hit : posting.entrySet()) {
+                        int length = documents.get(hit.getKey()).length;
+                        double tf = hit.getValue();
+                        double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                        termScores.merge(hit.getKey(), score, Math::max);
+                    }
+                }
+                if (termScores.isEmpty() && operator == Operator.AND) {
+                    return List.of();
+                }
+                termScores.forEach((id, score) -> {
+                    scores.merge(id, score, Double::sum);
+                    matchedTerms.merge(id, 1, Integer::sum);
+                });
+            }
+
+            Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(ranking);
+            for (Map.Entry<Long, Double> candidate : scores.entrySet()) {
+                if (operator == Operator.AND && matchedTerms.get(candidate.getKey()) < terms.size()) {
+                    continue;
+                }
+                top.offer(candidate);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<ProductResponse> results = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                results.add(documents.get(top.poll().getKey()).product);
+            }
+            Collections.reverse(results);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void addDocument(ProductResponse product) {
+        if (!Boolean.TRUE.equals(product.getActive())) {
+            return;
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = addField(frequencies, product.getName(), NAME_WEIGHT)
+            + addField(frequencies, product.getSku(), SKU_WEIGHT)
+            + addField(frequencies, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        frequencies.forEach((term, frequency) ->
+            postings.computeIfAbsent(term, key -> new HashMap<>()).put(product.getId(), frequency));
+        documents.put(product.getId(), new IndexedProduct(product, Math.max(length, 1), frequencies.keySet()));
+        totalLength += Math.max(length, 1);
+    }
+
+    private void removeDocument(Long productId) {
+        IndexedProduct existing = documents.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.terms) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= existing.length;
+    }
+
+    private static boolean sameText(ProductResponse indexed, ProductResponse product) {
+        return Objects.equals(indexed.getName(), product.getName())
+            && Objects.equals(indexed.getSku(), product.getSku())
+            && Objects.equals(indexed.getDescription(), product.getDescription());
+    }
+
+    private int addField(Map<String, Integer> frequencies, String text, int weight) {
+        List<String> tokens = tokenize(text);
+        tokens.forEach(token -> frequencies.merge(token, weight, Integer::sum));
+        return tokens.size();
+    }
+
+    private static final class IndexedProduct {
+        private final ProductResponse product;
+        private final int length;
+        private final Set<String> terms;
+
+        private IndexedProduct(ProductResponse product, int length, Set<String> terms) {
+            this.product = product;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.portfolio.ecommerce.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable radix trie over normalized product names. Every name is inserted once for itself
+ * and once per following word, so "laptop" also suggests "Gaming Laptop". Entries are stored in
+ * ranking order, which lets each node keep its top suggestions as the K smallest entry indexes
+ * of its subtree and answer a prefix lookup without visiting any descendants.
+ */
+final class ProductSuggestTrie {
+
+    static final int TOP_K = 10;
+
+    private static final int MAX_WORDS_PER_NAME = 8;
+    private static final int[] NO_RESULTS = new int[0];
+
+    record Entry(Long productId, String name, long popularity) {
+    }
+
+    private final Entry[] entries;
+    private final Node root;
+
+    private ProductSuggestTrie(Entry[] entries, Node root) {
+        this.entries = entries;
+        this.root = root;
+    }
+
+    static ProductSuggestTrie empty() {
+        return new ProductSuggestTrie(new Entry[0], new Node("", new char[0], new Node[0], NO_RESULTS));
+    }
+
+    static ProductSuggestTrie build(Collection<Entry> source) {
+        Entry[] ranked = source.toArray(new Entry[0]);
+        Arrays.sort(ranked, Comparator.comparingLong(Entry::popularity).reversed()
+            .thenComparing(Entry::name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Entry::productId));
+
+        List<Key> keys = new ArrayList<>();
+        for (int rank = 0; rank < ranked.length; rank++) {
+            String normalized = normalize(ranked[rank].name());
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            keys.add(new Key(normalized, rank));
+            int words = 1;
+            for (int i = normalized.indexOf(' '); i >= 0 && words < MAX_WORDS_PER_NAME; i = normalized.indexOf(' ', i + 1)) {
+                keys.add(new Key(normalized.substring(i + 1), rank));
+                words++;
+            }
+        }
+        keys.sort(Comparator.comparing(Key::text));
+
+        String[] texts = new String[keys.size()];
+        int[] ranks = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            texts[i] = keys.get(i).text();
+            ranks[i] = keys.get(i).rank();
+        }
+        return new ProductSuggestTrie(ranked, buildNode("", texts, ranks, 0, texts.length, 0));
+    }
+
+    List<Entry> suggest(String prefix, int limit) {
+        String remaining = normalizePrefix(prefix);
+        if (remaining.isEmpty() || limit < 1) {
+            return List.of();
+        }
+
+        Node node = root;
+        while (!remaining.isEmpty()) {
+            Node child = node.child(remaining.charAt(0));
+            if (child == null) {
+                return List.of();
+            }
+            if (remaining.length() <= child.label.length()) {
+                if (!child.label.startsWith(remaining)) {
+                    return List.of();
+                }
+                node = child;
+                break;
+            }
+            if (!remaining.startsWith(child.label)) {
+                return List.of();
+            }
+            remaining = remaining.substring(child.label.length());
+            node = child;
+        }
+
+        int count = Math.min(limit, node.top.length);
+        List<Entry> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(entries[node.top[i]]);
+        }
+        return results;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private static String normalizePrefix(String prefix) {
+        String normalized = normalize(prefix);
+        // A trailing separator means the user finished a word, so only continue past it
+        if (!normalized.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            return normalized + " ";
+        }
+        return normalized;
+    }
+
+    private static Node buildNode(String label, String[] texts, int[] ranks, int from, int to, int depth) {
+        int[] top = NO_RESULTS;
+        int i = from;
+        // Sorted input puts keys that end exactly at this node first
+        while (i < to && texts[i].length() == depth) {
+            top = mergeTop(top, new int[]{ranks[i]});
+            i++;
+        }
+
+        List<Node> children = new ArrayList<>();
+        while (i < to) {
+            char first = texts[i].charAt(depth);
+            int j = i;
+            while (j < to && texts[j].charAt(depth) == first) {
+                j++;
+            }
+            // Keys in [i, j) are sorted, so their common prefix is that of the first and last one
+            String low = texts[i];
+            String high = texts[j - 1];
+            int end = depth + 1;
+            int max = Math.min(low.length(), high.length());
+            while (end < max && low.charAt(end) == high.charAt(end)) {
+                end++;
+            }
+            Node child = buildNode(low.substring(depth, end), texts, ranks, i, j, end);
+            children.add(child);
+            top = mergeTop(top, child.top);
+            i = j;
+        }
+
+        char[] firstChars = new char[children.size()];
+        for (int c = 0; c < children.size(); c++) {
+            firstChars[c] = children.get(c).label.charAt(0);
+        }
+        return new Node(label, firstChars, children.toArray(new Node[0]), top);
+    }
+
+    private static int[] mergeTop(int[] left, int[] right) {
+        int[] merged = new int[Math.min(TOP_K, left.length + right.length)];
+        int size = 0;
+        int l = 0;
+        int r = 0;
+        while (size < merged.length && (l < left.length || r < right.length)) {
+            int next;
+            if (r >= right.length || (l < left.length && left[l] <= right[r])) {
+                next = left[l++];
+            } else {
+                next = right[r++];
+            }
+            // The same product can reach a node through two of its words
+            if (size == 0 || merged[size - 1] != next) {
+                merged[size++] = next;
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private record Key(String text, int rank) {
+    }
+
+    private static final class Node {
+        private final String label;
+        private final char[] firstChars;
+        private final Node[] children;
+        private final int[] top;
+
+        private Node(String label, char[] firstChars, Node[] children, int[] top) {
+            this.label = label;
+            this.firstChars = firstChars;
+            this.children = children;
+            this.top = top;
+        }
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(firstChars, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.dto.ProductSuggestionResponse;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import com.portfolio.ecommerce.event.ProductsImportedEvent;
+import com.portfolio.ecommerce.repository.OrderItemRepository;
+import com.portfolio.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Serves typeahead suggestions from an immutable {@link ProductSuggestTrie}. Product writes only
+ * touch the entry map; the trie is swapped for a freshly built one shortly afterwards, so lookups
+ * never take a lock. Popularity comes from units sold and is refreshed with a periodic full reload.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSuggester {
+
+    public static final int MAX_SUGGESTIONS = ProductSuggestTrie.TOP_K;
+
+    private final ProductRepository productRepository;
+    private final OrderItemRepository orderItemRepository;
+
+    private final Map<Long, ProductSuggestTrie.Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile ProductSuggestTrie trie = ProductSuggestTrie.empty();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${catalog.suggest.reload-interval-ms:600000}",
+               initialDelayString = "${catalog.suggest.reload-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public void reload() {
+        Map<Long, Long> unitsSold = new HashMap<>();
+        orderItemRepository.sumQuantityByProduct()
+            .forEach(sales -> unitsSold.put(sales.getProductId(), sales.getUnitsSold()));
+
+        Map<Long, ProductSuggestTrie.Entry> loaded = new HashMap<>();
+        for (ProductRepository.ProductNameView product : productRepository.findActiveProductNames()) {
+            loaded.put(product.getId(), new ProductSuggestTrie.Entry(
+                product.getId(), product.getName(), unitsSold.getOrDefault(product.getId(), 0L)));
+        }
+
+        entries.clear();
+        entries.putAll(loaded);
+        dirty.set(false);
+        trie = ProductSuggestTrie.build(loaded.values());
+        log.info("Product suggestion trie built with {} products", trie.size());
+    }
+
+    @Async
+    @EventListener(ProductsImportedEvent.class)
+    @Transactional(readOnly = true)
+    public void onProductsImported(ProductsImportedEvent event) {
+        reload();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isStockOnly()) {
+            return;
+        }
+        ProductResponse product = event.getProduct();
+        ProductSuggestTrie.Entry previous = entries.get(event.getProductId());
+        if (event.isDeleted() || !Boolean.TRUE.equals(product.getActive())) {
+            if (previous == null) {
+                return;
+            }
+            entries.remove(event.getProductId());
+        } else {
+            // Only a new name or a product coming back into the catalog changes what is suggested
+            if (previous != null && Objects.equals(previous.name(), product.getName())) {
+                return;
+            }
+            long popularity = previous != null ? previous.popularity() : 0L;
+            entries.put(product.getId(), new ProductSuggestTrie.Entry(product.getId(), product.getName(), popularity));
+        }
+        dirty.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.suggest.patch-delay-ms:1000}")
+    public void applyPendingChanges() {
+        // Coalesces every write since the last run into a single rebuild
+        if (dirty.getAndSet(false)) {
+            trie = ProductSuggestTrie.build(List.copyOf(entries.values()));
+        }
+    }
+
+    public List<ProductSuggestionResponse> suggest(String prefix, int limit) {
+        return trie.suggest(prefix, limit).stream()
+            .map(entry -> new ProductSuggestionResponse(entry.productId(), entry.name()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,17 @@
+package com.portfolio.ecommerce.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Caches are configured through spring.cache.* so each environment can size them or switch
+ * them off with spring.cache.type=none. Caching advice runs outside the transaction advice,
+ * so a cache hit never opens a transaction or borrows a connection.
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+}
@@ -7,8 +7,12 @@ import com.portfolio.ecommerce.dto.SignupRequest;
 import com.portfolio.ecommerce.security.JwtTokenProvider;
 import com.portfolio.ecommerce.security.UserDetailsImpl;
 import com.portfolio.ecommerce.service.AuthService;
+import com.portfolio.ecommerce.service.CartService;
+import com.portfolio.ecommerce.service.GuestCartCodec;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -18,20 +22,26 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
+@Slf4j
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
     private final AuthService authService;
+    private final CartService cartService;
+    private final GuestCartCodec guestCartCodec;
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                              @CookieValue(name = GuestCartCodec.COOKIE_NAME, required = false)
+                                              String guestCart) {
         Authentication authentication = authenticationManager.authenticate(
             new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
         );
@@ -44,13 +54,28 @@ public class AuthController {
             .map(GrantedAuthority::getAuthority)
             .collect(Collectors.toList());
 
-        return ResponseEntity.ok(new JwtResponse(
+        JwtResponse body = new JwtResponse(
             jwt,
             userDetails.getId(),
             userDetails.getUsername(),
             userDetails.getEmail(),
             roles
-        ));
+        );
+
+        Map<Long, Integer> guestLines = guestCartCodec.decode(guestCart);
+        if (guestLines.isEmpty()) {
+            return ResponseEntity.ok(body);
+        }
+        try {
+            cartService.mergeGuestCart(userDetails.getId(), guestLines);
+        } catch (RuntimeException ex) {
+            // Keep the cookie so the next login can try again; signing in matters more
+            log.warn("Could not merge guest cart for user id {}", userDetails.getId(), ex);
+            return ResponseEntity.ok(body);
+        }
+        return ResponseEntity.ok()
+            .header(HttpHeaders.SET_COOKIE, guestCartCodec.expiredCookie().toString())
+            .body(body);
     }
 
     @PostMapping("/register")
@@ -1,15 +1,22 @@
 package com.portfolio.ecommerce.controller;
 
 import com.portfolio.ecommerce.dto.CartItemRequest;
+import com.portfolio.ecommerce.dto.CartPatchRequest;
 import com.portfolio.ecommerce.dto.CartResponse;
 import com.portfolio.ecommerce.security.UserDetailsImpl;
 import com.portfolio.ecommerce.service.CartService;
+import com.portfolio.ecommerce.service.GuestCartCodec;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/cart")
@@ -18,10 +25,23 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
 
     private final CartService cartService;
+    private final GuestCartCodec guestCartCodec;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<CartResponse> getCart(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+    public ResponseEntity<CartResponse> getCart(@AuthenticationPrincipal UserDetailsImpl userDetails,
+                                                @RequestParam(required = false) Long sinceVersion,
+                                                WebRequest webRequest) {
+        if (sinceVersion != null) {
+            CartResponse changes = cartService.getCartChanges(userDetails.getId(), sinceVersion);
+            if (sinceVersion.equals(changes.getVersion())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+            return ResponseEntity.ok(changes);
+        }
+        if (ConditionalGet.notModified(webRequest, cartService.getCartVersion(userDetails.getId()), true)) {
+            return null;
+        }
         CartResponse cart = cartService.getCartByUserId(userDetails.getId());
         return ResponseEntity.ok(cart);
     }
@@ -29,8 +49,9 @@ public class CartController {
     @PostMapping("/items")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<CartResponse> addItemToCart(@AuthenticationPrincipal UserDetailsImpl userDetails,
-                                                       @Valid @RequestBody CartItemRequest request) {
-        CartResponse cart = cartService.addItemToCart(userDetails.getId(), request);
+                                                       @Valid @RequestBody CartItemRequest request,
+                                                       @RequestParam(defaultValue = "false") boolean delta) {
+        CartResponse cart = cartService.addItemToCart(userDetails.getId(), request, delta);
         return ResponseEntity.ok(cart);
     }
 
@@ -38,16 +59,27 @@ public class CartController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<CartResponse> updateCartItem(@AuthenticationPrincipal UserDetailsImpl userDetails,
                                                         @PathVariable Long itemId,
-                                                        @RequestParam Integer quantity) {
-        CartResponse cart = cartService.updateCartItem(userDetails.getId(), itemId, quantity);
+                                                        @RequestParam Integer quantity,
+                                                        @RequestParam(defaultValue = "false") boolean delta) {
+        CartResponse cart = cartService.updateCartItem(userDetails.getId(), itemId, quantity, delta);
         return ResponseEntity.ok(cart);
     }
 
     @DeleteMapping("/items/{itemId}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<CartResponse> removeItemFromCart(@AuthenticationPrincipal UserDetailsImpl userDetails,
-                                                            @PathVariable Long itemId) {
-        CartResponse cart = cartService.removeItemFromCart(userDetails.getId(), itemId);
+                                                            @PathVariable Long itemId,
+                                                            @RequestParam(defaultValue = "false") boolean delta) {
+        CartResponse cart = cartService.removeItemFromCart(userDetails.getId(), itemId, delta);
+        return ResponseEntity.ok(cart);
+    }
+
+    @PatchMapping
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<CartResponse> patchCart(@AuthenticationPrincipal UserDetailsImpl userDetails,
+                                                  @Valid @RequestBody CartPatchRequest request,
+                                                  @RequestParam(defaultValue = "false") boolean delta) {
+        CartResponse cart = cartService.patchCart(userDetails.getId(), request, delta);
         return ResponseEntity.ok(cart);
     }
 
@@ -57,4 +89,46 @@ public class CartController {
         cartService.clearCart(userDetails.getId());
         return ResponseEntity.ok().build();
     }
+
+    // Guest carts live in a signed cookie; login merges them into the account's cart
+
+    @GetMapping("/guest")
+    public ResponseEntity<CartResponse> getGuestCart(
+            @CookieValue(name = GuestCartCodec.COOKIE_NAME, required = false) String guestCart) {
+        return ResponseEntity.ok(cartService.getGuestCart(guestCartCodec.decode(guestCart)));
+    }
+
+    @PostMapping("/guest/items")
+    public ResponseEntity<CartResponse> addItemToGuestCart(
+            @CookieValue(name = GuestCartCodec.COOKIE_NAME, required = false) String guestCart,
+            @Valid @RequestBody CartItemRequest request) {
+        return guestCartResponse(cartService.addItemToGuestCart(guestCartCodec.decode(guestCart), request));
+    }
+
+    @PutMapping("/guest/items/{productId}")
+    public ResponseEntity<CartResponse> updateGuestCartItem(
+            @CookieValue(name = GuestCartCodec.COOKIE_NAME, required = false) String guestCart,
+            @PathVariable Long productId,
+            @RequestParam Integer quantity) {
+        return guestCartResponse(
+            cartService.updateGuestCartItem(guestCartCodec.decode(guestCart), productId, quantity));
+    }
+
+    @DeleteMapping("/guest/items/{productId}")
+    public ResponseEntity<CartResponse> removeItemFromGuestCart(
+            @CookieValue(name = GuestCartCodec.COOKIE_NAME, required = false) String guestCart,
+            @PathVariable Long productId) {
+        return guestCartResponse(cartService.updateGuestCartItem(guestCartCodec.decode(guestCart), productId, 0));
+    }
+
+    @DeleteMapping("/guest")
+    public ResponseEntity<CartResponse> clearGuestCart() {
+        return guestCartResponse(Map.of());
+    }
+
+    private ResponseEntity<CartResponse> guestCartResponse(Map<Long, Integer> lines) {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.SET_COOKIE, guestCartCodec.cookie(lines).toString())
+            .body(cartService.getGuestCart(lines));
+    }
 }
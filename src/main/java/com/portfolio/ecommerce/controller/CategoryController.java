@@ -9,6 +9,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -21,8 +22,13 @@ public class CategoryController {
     private final CategoryService categoryService;
 
     @GetMapping
-    public ResponseEntity<List<CategoryResponse>> getAllCategories(@RequestParam(required = false) Boolean active) {
-        List<CategoryResponse> categories = active != null && active 
+    public ResponseEntity<List<CategoryResponse>> getAllCategories(@RequestParam(required = false) Boolean active,
+                                                                   WebRequest webRequest) {
+        boolean activeOnly = active != null && active;
+        if (ConditionalGet.notModified(webRequest, categoryService.getCategoriesVersion(activeOnly), false)) {
+            return null;
+        }
+        List<CategoryResponse> categories = activeOnly
             ? categoryService.getActiveCategories() 
             : categoryService.getAllCategories();
         return ResponseEntity.ok(categories);
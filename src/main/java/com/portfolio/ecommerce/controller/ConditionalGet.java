@@ -0,0 +1,33 @@
+package com.portfolio.ecommerce.controller;
+
+import com.portfolio.ecommerce.service.ResourceVersion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Conditional GET support shared by the read endpoints. Responses are marked no-cache, which
+ * lets clients store them but makes them revalidate with the ETag each time; without it Spring
+ * Security's default no-store would stop clients from ever sending If-None-Match.
+ */
+final class ConditionalGet {
+
+    private static final String PUBLIC_REVALIDATE = CacheControl.noCache().getHeaderValue();
+    private static final String PRIVATE_REVALIDATE = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Sets ETag, Last-Modified and Cache-Control and returns true when the client's copy is still
+     * current, in which case the response is already a 304 and the caller should return null.
+     */
+    static boolean notModified(WebRequest request, ResourceVersion version, boolean userSpecific) {
+        if (request instanceof ServletWebRequest servletRequest && servletRequest.getResponse() != null) {
+            servletRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL,
+                userSpecific ? PRIVATE_REVALIDATE : PUBLIC_REVALIDATE);
+        }
+        return request.checkNotModified(version.getEtag(), version.getLastModified());
+    }
+}
@@ -1,28 +1,64 @@
 package com.portfolio.ecommerce.controller;
 
+import com.portfolio.ecommerce.dto.CheckoutStatusResponse;
+import com.portfolio.ecommerce.dto.OrderPageResponse;
 import com.portfolio.ecommerce.dto.OrderResponse;
+import com.portfolio.ecommerce.model.CheckoutRequest;
+import com.portfolio.ecommerce.security.UserDetailsImpl;
+import com.portfolio.ecommerce.service.AsyncCheckoutService;
 import com.portfolio.ecommerce.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
 public class OrderController {
+    private static final String UUID_PATTERN =
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}";
+
     private final OrderService orderService;
+    private final AsyncCheckoutService asyncCheckoutService;
 
     @PostMapping
-    public ResponseEntity<OrderResponse> createOrder(Authentication authentication) {
-        String username = authentication.getName();
-        OrderResponse order = orderService.createOrderFromCart(username);
+    public ResponseEntity<OrderResponse> createOrder(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        OrderResponse order = orderService.createOrderFromCart(userDetails.getId());
         return ResponseEntity.status(HttpStatus.CREATED).body(order);
     }
 
+    /**
+     * Accepts the checkout for background processing and answers 202 with a token to poll.
+     */
+    @PostMapping("/async")
+    public ResponseEntity<CheckoutStatusResponse> submitCheckout(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        CheckoutStatusResponse accepted = asyncCheckoutService.submit(userDetails.getId());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/orders/" + accepted.getToken()))
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(accepted);
+    }
+
+    @GetMapping("/{token:" + UUID_PATTERN + "}")
+    public ResponseEntity<CheckoutStatusResponse> getCheckoutStatus(
+            @PathVariable UUID token,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        CheckoutStatusResponse status = asyncCheckoutService.getStatus(token, userDetails.getId());
+        boolean finished = status.getStatus() == CheckoutRequest.Status.COMPLETED
+                || status.getStatus() == CheckoutRequest.Status.FAILED;
+        return finished
+                ? ResponseEntity.ok(status)
+                : ResponseEntity.ok().header(HttpHeaders.RETRY_AFTER, "1").body(status);
+    }
+
     @GetMapping
     public ResponseEntity<List<OrderResponse>> getUserOrders(Authentication authentication) {
         String username = authentication.getName();
@@ -30,7 +66,19 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
-    @GetMapping("/{orderId}")
+    /**
+     * Order history a page at a time, newest first; summary leaves out the order lines.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<OrderPageResponse> getUserOrdersPage(@AuthenticationPrincipal UserDetailsImpl userDetails,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestParam(defaultValue = "false") boolean summary) {
+        OrderPageResponse page = orderService.getUserOrdersPage(userDetails.getId(), cursor, limit, summary);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/{orderId:\\d+}")
     public ResponseEntity<OrderResponse> getOrderById(
             @PathVariable Long orderId,
             Authentication authentication) {
@@ -1,15 +1,30 @@
 package com.portfolio.ecommerce.controller;
 
+import com.portfolio.ecommerce.dto.ProductFacetResponse;
+import com.portfolio.ecommerce.dto.ProductImportResponse;
+import com.portfolio.ecommerce.dto.ProductLookupResponse;
+import com.portfolio.ecommerce.dto.ProductPageResponse;
 import com.portfolio.ecommerce.dto.ProductRequest;
 import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.dto.ProductSuggestionResponse;
+import com.portfolio.ecommerce.service.InventoryService;
+import com.portfolio.ecommerce.service.ProductExportFormat;
+import com.portfolio.ecommerce.service.ProductImportService;
 import com.portfolio.ecommerce.service.ProductService;
+import com.portfolio.ecommerce.service.ResourceVersion;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
@@ -19,33 +34,115 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final InventoryService inventoryService;
 
     @GetMapping
-    public ResponseEntity<List<ProductResponse>> getAllProducts(@RequestParam(required = false) Boolean active) {
-        List<ProductResponse> products = active != null && active 
+    public ResponseEntity<List<ProductResponse>> getAllProducts(@RequestParam(required = false) Boolean active,
+                                                                WebRequest webRequest) {
+        boolean activeOnly = active != null && active;
+        // Version first: a write racing the body only makes the next request miss, never serve stale data
+        if (ConditionalGet.notModified(webRequest, productService.getProductsVersion(activeOnly, null), false)) {
+            return null;
+        }
+        List<ProductResponse> products = activeOnly
             ? productService.getActiveProducts() 
             : productService.getAllProducts();
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<ProductLookupResponse>> getProductsByIds(@RequestParam List<Long> ids) {
+        List<ProductLookupResponse> products = productService.getProductsByIds(ids);
+        return ResponseEntity.ok(products);
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<ProductPageResponse> getProductsPage(@RequestParam(required = false) Boolean active,
+                                                               @RequestParam(required = false) String sort,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer limit) {
+        ProductPageResponse page = productService.getProductsPage(active != null && active, sort, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(required = false) String format,
+                                                                @RequestParam(required = false) Boolean active) {
+        ProductExportFormat exportFormat = ProductExportFormat.parse(format);
+        boolean activeOnly = active != null && active;
+        StreamingResponseBody body = out -> productService.exportProducts(exportFormat, activeOnly, out);
+        return ResponseEntity.ok()
+            .contentType(exportFormat.getMediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + exportFormat.getExtension() + "\"")
+            .body(body);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id, WebRequest webRequest) {
         ProductResponse product = productService.getProductById(id);
+        ResourceVersion version = ResourceVersion.of("product", product.getId(), product.getVersion(),
+            product.getUpdatedAt());
+        if (ConditionalGet.notModified(webRequest, version, false)) {
+            return null;
+        }
         return ResponseEntity.ok(product);
     }
 
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<List<ProductResponse>> getProductsByCategory(@PathVariable Long categoryId) {
+    public ResponseEntity<List<ProductResponse>> getProductsByCategory(@PathVariable Long categoryId,
+                                                                       WebRequest webRequest) {
+        if (ConditionalGet.notModified(webRequest, productService.getProductsVersion(true, categoryId), false)) {
+            return null;
+        }
         List<ProductResponse> products = productService.getProductsByCategory(categoryId);
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/category/{categoryId}/page")
+    public ResponseEntity<ProductPageResponse> getProductsByCategoryPage(@PathVariable Long categoryId,
+                                                                         @RequestParam(required = false) String sort,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer limit) {
+        ProductPageResponse page = productService.getProductsByCategoryPage(categoryId, sort, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<List<ProductResponse>> searchProducts(@RequestParam String keyword) {
-        List<ProductResponse> products = productService.searchProducts(keyword);
+    public ResponseEntity<List<ProductResponse>> searchProducts(@RequestParam String keyword,
+                                                                @RequestParam(required = false) String operator,
+                                                                @RequestParam(required = false) Integer limit) {
+        List<ProductResponse> products = productService.searchProducts(keyword, operator, limit);
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacetResponse> getFacets(@RequestParam(required = false) Long categoryId,
+                                                          @RequestParam(required = false) BigDecimal minPrice,
+                                                          @RequestParam(required = false) BigDecimal maxPrice,
+                                                          @RequestParam(required = false) Boolean inStock,
+                                                          @RequestParam(required = false) Integer buckets) {
+        ProductFacetResponse facets = productService.getFacets(categoryId, minPrice, maxPrice,
+            inStock != null && inStock, buckets);
+        return ResponseEntity.ok(facets);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestionResponse>> suggestProducts(@RequestParam String prefix,
+                                                                           @RequestParam(required = false) Integer limit) {
+        List<ProductSuggestionResponse> suggestions = productService.suggestProducts(prefix, limit);
+        return ResponseEntity.ok(suggestions);
+    }
+
+    @GetMapping("/search/page")
+    public ResponseEntity<ProductPageResponse> searchProductsPage(@RequestParam String keyword,
+                                                                  @RequestParam(required = false) String sort,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer limit) {
+        ProductPageResponse page = productService.searchProductsPage(keyword, sort, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ProductResponse> createProduct(@Valid @RequestBody ProductRequest request) {
@@ -53,6 +150,20 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(product);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductImportResponse> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                InputStream body) {
+        ProductImportResponse result = productImportService.importProducts(body, MediaType.parseMediaType(contentType));
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/import/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<ProductImportResponse>> getRunningImports() {
+        return ResponseEntity.ok(productImportService.getRunningImports());
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ProductResponse> updateProduct(@PathVariable Long id, 
@@ -61,6 +172,12 @@ public class ProductController {
         return ResponseEntity.ok(product);
     }
 
+    @PutMapping("/{id}/stock-stripes")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductResponse> setStockStripes(@PathVariable Long id, @RequestParam int count) {
+        return ResponseEntity.ok(inventoryService.setStockStripes(id, count));
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteProduct(@PathVariable Long id) {
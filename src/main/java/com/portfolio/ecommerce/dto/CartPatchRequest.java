@@ -0,0 +1,43 @@
+package com.portfolio.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartPatchRequest {
+
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 200, message = "At most 200 operations can be applied at once")
+    private List<@Valid @NotNull Operation> operations;
+
+    public enum OperationType {
+        ADD,
+        SET_QUANTITY,
+        REMOVE
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operation {
+
+        @NotNull(message = "Operation type is required")
+        private OperationType op;
+
+        @NotNull(message = "Product ID is required")
+        private Long productId;
+
+        private Integer quantity;
+    }
+}
@@ -19,4 +19,8 @@ public class CartResponse {
     private List<CartItemResponse> items;
     private BigDecimal totalPrice;
     private Integer totalItems;
+    private Long version;
+    // When true, items holds only the lines changed since the version the client asked from
+    private Boolean delta;
+    private List<Long> removedItemIds;
 }
@@ -0,0 +1,23 @@
+package com.portfolio.ecommerce.dto;
+
+import com.portfolio.ecommerce.model.CheckoutRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutStatusResponse {
+    private UUID token;
+    private CheckoutRequest.Status status;
+    private Long orderId;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -21,5 +21,6 @@ public class OrderResponse {
     private BigDecimal tax;
     private BigDecimal totalPrice;
     private Order.OrderStatus status;
+    private Integer itemCount;
     private List<OrderItemResponse> items;
 }
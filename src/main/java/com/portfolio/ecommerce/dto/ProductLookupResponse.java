@@ -0,0 +1,17 @@
+package com.portfolio.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductLookupResponse {
+
+    private Long id;
+    private Boolean found;
+    private ProductResponse product;
+}
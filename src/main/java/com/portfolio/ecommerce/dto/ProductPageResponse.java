@@ -0,0 +1,19 @@
+package com.portfolio.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPageResponse {
+
+    private List<ProductResponse> items;
+    private String nextCursor;
+    private Boolean hasMore;
+}
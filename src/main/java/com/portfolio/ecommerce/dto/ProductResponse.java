@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class ProductResponse {
 
     private Long id;
@@ -19,11 +19,13 @@ public class ProductResponse {
     private String description;
     private BigDecimal price;
     private Integer stockQuantity;
+    private Integer stockStripes;
     private String imageUrl;
     private String sku;
     private Boolean active;
     private Long categoryId;
     private String categoryName;
+    private Long version;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
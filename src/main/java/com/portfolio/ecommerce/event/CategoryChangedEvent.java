@@ -0,0 +1,31 @@
+package com.portfolio.ecommerce.event;
+
+import lombok.Getter;
+
+/**
+ * Published by CategoryService whenever a category is created, updated or deleted, so that read
+ * models holding copies of the category name can patch themselves once the change has committed.
+ */
+@Getter
+public class CategoryChangedEvent {
+
+    private final Long categoryId;
+    private final String name;
+
+    private CategoryChangedEvent(Long categoryId, String name) {
+        this.categoryId = categoryId;
+        this.name = name;
+    }
+
+    public static CategoryChangedEvent upserted(Long categoryId, String name) {
+        return new CategoryChangedEvent(categoryId, name);
+    }
+
+    public static CategoryChangedEvent deleted(Long categoryId) {
+        return new CategoryChangedEvent(categoryId, null);
+    }
+
+    public boolean isDeleted() {
+        return name == null;
+    }
+}
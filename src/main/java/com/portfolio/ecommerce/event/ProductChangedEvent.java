@@ -0,0 +1,39 @@
+package com.portfolio.ecommerce.event;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import lombok.Getter;
+
+/**
+ * Published by ProductService whenever a product is created, updated or deleted, so that
+ * in-memory read models can patch themselves once the change has been committed. Checkouts and
+ * the stripe roll-up publish stock-only changes, which read models that never show stock skip.
+ */
+@Getter
+public class ProductChangedEvent {
+
+    private final Long productId;
+    private final ProductResponse product;
+    private final boolean stockOnly;
+
+    private ProductChangedEvent(Long productId, ProductResponse product, boolean stockOnly) {
+        this.productId = productId;
+        this.product = product;
+        this.stockOnly = stockOnly;
+    }
+
+    public static ProductChangedEvent upserted(ProductResponse product) {
+        return new ProductChangedEvent(product.getId(), product, false);
+    }
+
+    public static ProductChangedEvent stockChanged(ProductResponse product) {
+        return new ProductChangedEvent(product.getId(), product, true);
+    }
+
+    public static ProductChangedEvent deleted(Long productId) {
+        return new ProductChangedEvent(productId, null, false);
+    }
+
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.portfolio.ecommerce.event;
+
+import lombok.Getter;
+
+/**
+ * Published after a bulk import has committed its last chunk. Imports bypass the per-product
+ * {@link ProductChangedEvent}, so read models rebuild themselves from the database instead.
+ */
+@Getter
+public class ProductsImportedEvent {
+
+    private final long importedCount;
+
+    public ProductsImportedEvent(long importedCount) {
+        this.importedCount = importedCount;
+    }
+}
@@ -0,0 +1,26 @@
+package com.portfolio.ecommerce.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when an order asks for more units than are left of one or more products. Carries every
+ * short line, not just the first, so the client can fix the whole cart in one go.
+ */
+@Getter
+public class InsufficientStockException extends RuntimeException {
+
+    private final List<Shortage> shortages;
+
+    public record Shortage(Long productId, String sku, int requested, int available) {
+    }
+
+    public InsufficientStockException(List<Shortage> shortages) {
+        super("Insufficient stock for " + shortages.stream()
+            .map(shortage -> shortage.sku() != null ? shortage.sku() : "product " + shortage.productId())
+            .collect(Collectors.joining(", ")));
+        this.shortages = shortages;
+    }
+}
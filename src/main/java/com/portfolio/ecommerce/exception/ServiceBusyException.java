@@ -0,0 +1,17 @@
+package com.portfolio.ecommerce.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a bounded queue has no room; clients should retry after the given number of seconds.
+ */
+@Getter
+public class ServiceBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public ServiceBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,221 @@
+package com.portfolio.ecommerce.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.portfolio.ecommerce.repository.IdempotencyKeyJdbcRepository;
+import jakarta.servlet.ServletException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Responses recorded per user and Idempotency-Key. Recent ones are kept in memory, so a retry
+ * arriving at the node that served the original costs a cache lookup; the idempotency_keys table
+ * makes them survive restarts and reach the other nodes. Duplicates arriving while the original
+ * is still running wait for its response instead of running again.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final TypeReference<Map<String, List<String>>> HEADERS_TYPE = new TypeReference<>() {
+    };
+
+    private final IdempotencyKeyJdbcRepository idempotencyKeyJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration pendingTimeout;
+    private final Duration waitTimeout;
+    private final Cache<Key, StoredResponse> responses;
+    private final ConcurrentMap<Key, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(IdempotencyKeyJdbcRepository idempotencyKeyJdbcRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${idempotency.ttl:24h}") Duration ttl,
+                            @Value("${idempotency.cache.max-bytes:16777216}") long maxBytes,
+                            @Value("${idempotency.pending-timeout:1m}") Duration pendingTimeout,
+                            @Value("${idempotency.wait-timeout:30s}") Duration waitTimeout) {
+        this.idempotencyKeyJdbcRepository = idempotencyKeyJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.pendingTimeout = pendingTimeout;
+        this.waitTimeout = waitTimeout;
+        this.responses = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, StoredResponse response) -> response.weight())
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    /**
+     * Runs a request under its key, at most once per key.
+     */
+    @FunctionalInterface
+    public interface Execution {
+
+        /**
+         * Runs the request and writes its response. Returns that response to record, or null
+         * when it should not be replayed, in which case a retry runs the request again.
+         */
+        StoredResponse run() throws IOException, ServletException;
+    }
+
+    public record StoredResponse(String fingerprint, int status, String contentType,
+                                 Map<String, List<String>> headers, byte[] body) {
+
+        private int weight() {
+            return body.length + 256;
+        }
+    }
+
+    /**
+     * The key was reused for a different request, or its request is still running elsewhere.
+     */
+    @Getter
+    public static class ConflictException extends RuntimeException {
+
+        private final HttpStatus status;
+
+        public ConflictException(HttpStatus status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private record Key(Long userId, String key) {
+    }
+
+    /**
+     * Returns the recorded response for the key, or runs the execution and returns null when it
+     * is the first request with this key. Either way the execution runs at most once per key
+     * unless it chose not to record its response.
+     */
+    public StoredResponse replayOrRun(Long userId, String key, String fingerprint, Execution execution)
+            throws IOException, ServletException {
+        Key cacheKey = new Key(userId, key);
+        while (true) {
+            StoredResponse cached = responses.getIfPresent(cacheKey);
+            if (cached != null) {
+                return matching(cached, fingerprint);
+            }
+
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(cacheKey, mine);
+            if (running != null) {
+                StoredResponse finished = await(running);
+                if (finished != null) {
+                    return matching(finished, fingerprint);
+                }
+                // The original failed without recording anything, so this duplicate takes over
+                continue;
+            }
+
+            StoredResponse result = null;
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                if (!idempotencyKeyJdbcRepository.claim(userId, key, fingerprint, now, now.plus(ttl),
+                        now.minus(pendingTimeout))) {
+                    result = recorded(userId, key, now);
+                    return matching(result, fingerprint);
+                }
+                result = runClaimed(userId, key, execution);
+                return null;
+            } finally {
+                inFlight.remove(cacheKey, mine);
+                if (result != null) {
+                    responses.put(cacheKey, result);
+                }
+                mine.complete(result);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}",
+               initialDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        int purged = idempotencyKeyJdbcRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private StoredResponse runClaimed(Long userId, String key, Execution execution)
+            throws IOException, ServletException {
+        StoredResponse response;
+        try {
+            response = execution.run();
+        } catch (IOException | ServletException | RuntimeException ex) {
+            idempotencyKeyJdbcRepository.release(userId, key);
+            throw ex;
+        }
+        if (response == null) {
+            idempotencyKeyJdbcRepository.release(userId, key);
+            return null;
+        }
+        try {
+            idempotencyKeyJdbcRepository.complete(userId, key, response.status(), response.contentType(),
+                objectMapper.writeValueAsString(response.headers()), response.body());
+        } catch (RuntimeException | JsonProcessingException ex) {
+            // The response has been sent; this node still replays it, other nodes wait out the claim
+            log.warn("Could not record the response for idempotency key {} of user id: {}", key, userId, ex);
+        }
+        return response;
+    }
+
+    private StoredResponse recorded(Long userId, String key, LocalDateTime now) {
+        Optional<IdempotencyKeyJdbcRepository.StoredKey> row = idempotencyKeyJdbcRepository.find(userId, key, now);
+        if (row.isEmpty() || row.get().statusCode() == null) {
+            throw new ConflictException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+        }
+        IdempotencyKeyJdbcRepository.StoredKey stored = row.get();
+        try {
+            Map<String, List<String>> headers = stored.headers() != null
+                ? objectMapper.readValue(stored.headers(), HEADERS_TYPE) : Map.of();
+            return new StoredResponse(stored.fingerprint(), stored.statusCode(), stored.contentType(), headers,
+                stored.body() != null ? stored.body() : new byte[0]);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unreadable headers recorded for idempotency key " + key, ex);
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+        } catch (TimeoutException ex) {
+            throw new ConflictException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException ex) {
+            // Never completed exceptionally; failures complete with null
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static StoredResponse matching(StoredResponse response, String fingerprint) {
+        if (!response.fingerprint().equals(fingerprint)) {
+            throw new ConflictException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "Idempotency-Key was already used for a different request");
+        }
+        return response;
+    }
+}
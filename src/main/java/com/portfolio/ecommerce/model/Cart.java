@@ -15,7 +15,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = {
+    @Index(name = "idx_carts_updated_at", columnList = "updated_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -39,6 +41,20 @@ public class Cart {
     @Builder.Default
     private BigDecimal totalPrice = BigDecimal.ZERO;
 
+    // Number of lines, kept alongside totalPrice so neither needs the items loaded
+    @Column(name = "item_count", columnDefinition = "integer default 0 not null")
+    @Builder.Default
+    private Integer itemCount = 0;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version;
+
+    // Version written by the last clear; deltas from before it are answered with the whole cart
+    @Column(name = "cleared_version", columnDefinition = "bigint default 0 not null")
+    @Builder.Default
+    private Long clearedVersion = 0L;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -51,17 +67,26 @@ public class Cart {
         this.totalPrice = items.stream()
             .map(CartItem::getSubtotal)
             .reduce(BigDecimal.ZERO, BigDecimal::add);
+        this.itemCount = items.size();
+    }
+
+    /**
+     * Moves the running totals by one line change, without touching the items collection.
+     */
+    public void applyLineDelta(int lineDelta, BigDecimal amountDelta) {
+        this.itemCount += lineDelta;
+        this.totalPrice = this.totalPrice.add(amountDelta);
     }
 
     public void addItem(CartItem item) {
         items.add(item);
         item.setCart(this);
-        calculateTotalPrice();
+        applyLineDelta(1, item.getSubtotal());
     }
 
     public void removeItem(CartItem item) {
         items.remove(item);
         item.setCart(null);
-        calculateTotalPrice();
+        applyLineDelta(-1, item.getSubtotal().negate());
     }
 }
@@ -0,0 +1,37 @@
+package com.portfolio.ecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tombstone for a deleted cart line, so a client holding an older cart version can be told which
+ * lines to drop. Keyed by the removed line's id; cleared with the cart, which resets deltas anyway.
+ */
+@Entity
+@Table(name = "cart_item_removals", indexes = {
+    @Index(name = "idx_cart_item_removals_cart_version", columnList = "cart_id, cart_version")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartItemRemoval {
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "cart_id", nullable = false)
+    private Long cartId;
+
+    @Column(name = "cart_version", nullable = false)
+    private Long cartVersion;
+
+    @Column(name = "removed_at", nullable = false)
+    private LocalDateTime removedAt;
+}
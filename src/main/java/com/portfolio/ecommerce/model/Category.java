@@ -35,10 +35,18 @@ public class Category {
     @Column(nullable = false)
     private Boolean active = true;
 
+    // Maintained with atomic deltas by the product write paths; never written through the entity
+    @Column(name = "product_count", columnDefinition = "integer default 0 not null", insertable = false, updatable = false)
+    private Integer productCount;
+
     @OneToMany(mappedBy = "category", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<Product> products = new ArrayList<>();
 
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
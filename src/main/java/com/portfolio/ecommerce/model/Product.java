@@ -13,7 +13,14 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+    @Index(name = "idx_products_price_id", columnList = "price, id"),
+    @Index(name = "idx_products_created_at_id", columnList = "created_at, id"),
+    @Index(name = "idx_products_category_id", columnList = "category_id, id"),
+    @Index(name = "idx_products_category_price_id", columnList = "category_id, price, id"),
+    @Index(name = "idx_products_category_created_at_id", columnList = "category_id, created_at, id"),
+    @Index(name = "idx_products_updated_at", columnList = "updated_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,6 +44,12 @@ public class Product {
     @Column(nullable = false)
     private Integer stockQuantity = 0;
 
+    // Above 0 the stock lives in that many product_stock_stripes rows and stockQuantity is their
+    // periodically rolled-up total
+    @Column(name = "stock_stripes", columnDefinition = "integer default 0 not null")
+    @Builder.Default
+    private Integer stockStripes = 0;
+
     @Column(length = 500)
     private String imageUrl;
 
@@ -50,11 +63,15 @@ public class Product {
     @JoinColumn(name = "category_id")
     private Category category;
 
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     @CreatedDate
-    @Column(nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @LastModifiedDate
-    @Column(nullable = false)
+    @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 }
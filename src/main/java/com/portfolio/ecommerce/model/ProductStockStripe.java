@@ -0,0 +1,46 @@
+package com.portfolio.ecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One sub-counter of a hot product's stock. Checkouts of a striped product take units from a
+ * random stripe, so concurrent buyers lock different rows instead of queueing on the product row.
+ * Units shoppers hold for their carts move from quantity into held on one stripe, so quantity is
+ * what is left to sell there and the stripe's share of the stock is the two together.
+ */
+@Entity
+@Table(name = "product_stock_stripes")
+@IdClass(ProductStockStripe.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductStockStripe {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    private Integer stripe;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(columnDefinition = "integer default 0 not null")
+    private Integer held;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long productId;
+        private Integer stripe;
+    }
+}
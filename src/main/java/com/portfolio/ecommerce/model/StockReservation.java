@@ -0,0 +1,53 @@
+package com.portfolio.ecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Stock held for a shopper's cart line until expires_at. Rows past their expiry no longer count
+ * against available stock, whether or not they have been deleted yet. Holds of striped products
+ * name the stripe whose held count carries their units; those units go back to the stripe when
+ * the row is deleted.
+ */
+@Entity
+@Table(name = "stock_reservations", indexes = {
+    @Index(name = "idx_stock_reservations_product_expires", columnList = "product_id, expires_at"),
+    @Index(name = "idx_stock_reservations_expires_at", columnList = "expires_at")
+})
+@IdClass(StockReservation.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservation {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    private Integer stripe;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private Long productId;
+    }
+}
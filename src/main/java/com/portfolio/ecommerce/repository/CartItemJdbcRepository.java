@@ -0,0 +1,179 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Set-based cart writes in PostgreSQL SQL, for paths where the entity round trips
+ * (find the cart, find the line, save both) are the cost and the race.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CartItemJdbcRepository {
+
+    // Inserts the line or adds to its quantity, refusing to go past maxQuantity, and moves the
+    // cart total and line count by the change, all in one statement. The line keeps the price it
+    // was first added at. No row comes back when the cart is missing or the stock check failed.
+    // The cart row is locked first so the line is stamped with the version the cart moves to.
+    private static final String UPSERT_LINE =
+        "WITH locked AS (" +
+        "  SELECT id, version FROM carts WHERE user_id = ? FOR UPDATE" +
+        "), line AS (" +
+        "  INSERT INTO cart_items (cart_id, product_id, quantity, price, subtotal, cart_version, created_at, updated_at) " +
+        "  SELECT locked.id, ?, ?, ?, ?, locked.version + 1, ?, ? FROM locked " +
+        "  ON CONFLICT (cart_id, product_id) DO UPDATE " +
+        "     SET quantity = cart_items.quantity + EXCLUDED.quantity, " +
+        "         subtotal = cart_items.price * (cart_items.quantity + EXCLUDED.quantity), " +
+        "         cart_version = EXCLUDED.cart_version, " +
+        "         updated_at = EXCLUDED.updated_at " +
+        "   WHERE cart_items.quantity + EXCLUDED.quantity <= ? " +
+        "  RETURNING id, cart_id, quantity, price, cart_version, (xmax = 0) AS inserted" +
+        "), cart AS (" +
+        "  UPDATE carts c SET total_price = c.total_price + line.price * ?, " +
+        "         item_count = c.item_count + CASE WHEN line.inserted THEN 1 ELSE 0 END, " +
+        "         version = line.cart_version, updated_at = ? " +
+        "    FROM line WHERE c.id = line.cart_id " +
+        "  RETURNING c.total_price" +
+        ") " +
+        "SELECT line.id, line.quantity, line.inserted, cart.total_price FROM line CROSS JOIN cart";
+
+    // Adds many new lines in one statement; the arrays are unnested into rows so the statement
+    // text is the same whatever the number of lines
+    private static final String INSERT_LINES =
+        "INSERT INTO cart_items (cart_id, product_id, quantity, price, subtotal, cart_version, created_at, updated_at) " +
+        "SELECT ?, l.product_id, l.quantity, l.price, l.price * l.quantity, ?, ?, ? " +
+        "  FROM unnest(?::bigint[], ?::integer[], ?::numeric[]) AS l(product_id, quantity, price) " +
+        "RETURNING id, product_id";
+
+    private static final String RECORD_REMOVALS =
+        "INSERT INTO cart_item_removals (item_id, cart_id, cart_version, removed_at) " +
+        "SELECT r.item_id, ?, ?, ? FROM unnest(?::bigint[]) AS r(item_id) " +
+        "ON CONFLICT (item_id) DO NOTHING";
+
+    // Rewrites the running totals of every cart that drifted from its lines. Carts touched since
+    // the cutoff are skipped: a mutation committing mid-statement would be rechecked against the
+    // aggregate read before it and "repaired" back to stale totals.
+    private static final String RECONCILE_TOTALS =
+        "UPDATE carts c SET total_price = t.total, item_count = t.lines, " +
+        "       version = c.version + 1, updated_at = ? " +
+        "  FROM (SELECT c2.id, COALESCE(SUM(i.subtotal), 0) AS total, COUNT(i.id) AS lines " +
+        "          FROM carts c2 LEFT JOIN cart_items i ON i.cart_id = c2.id GROUP BY c2.id) t " +
+        " WHERE c.id = t.id AND c.updated_at < ? " +
+        "   AND (c.total_price <> t.total OR c.item_count <> t.lines)";
+
+    private static final String INSERT_CART_IF_MISSING =
+        "INSERT INTO carts (user_id, total_price, item_count, version, cleared_version, created_at, updated_at) " +
+        "VALUES (?, 0, 0, 0, 0, ?, ?) ON CONFLICT (user_id) DO NOTHING";
+
+    // Empties up to n carts idle since the cutoff: their lines and tombstones go, and the totals
+    // are reset as a clear would. SKIP LOCKED leaves carts being written right now for a later run.
+    private static final String EXPIRE_IDLE_CARTS =
+        "WITH expired AS (" +
+        "  SELECT c.id FROM carts c " +
+        "   WHERE c.updated_at < ? AND EXISTS (SELECT 1 FROM cart_items i WHERE i.cart_id = c.id) " +
+        "   ORDER BY c.updated_at LIMIT ? " +
+        "   FOR UPDATE SKIP LOCKED" +
+        "), removed AS (" +
+        "  DELETE FROM cart_items WHERE cart_id IN (SELECT id FROM expired) RETURNING id" +
+        "), tombstones AS (" +
+        "  DELETE FROM cart_item_removals WHERE cart_id IN (SELECT id FROM expired)" +
+        "), reset AS (" +
+        "  UPDATE carts c SET total_price = 0, item_count = 0, version = c.version + 1, " +
+        "         cleared_version = c.version + 1, updated_at = ? " +
+        "   WHERE c.id IN (SELECT id FROM expired) " +
+        "  RETURNING c.id" +
+        ") " +
+        "SELECT (SELECT count(*) FROM reset), (SELECT count(*) FROM removed)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record UpsertedLine(Long itemId, int quantity, boolean inserted, BigDecimal cartTotal) {
+    }
+
+    public record ExpiredChunk(int carts, int lines) {
+    }
+
+    public record NewLine(Long productId, int quantity, BigDecimal price) {
+    }
+
+    /**
+     * Creates the user's cart on first use; a concurrent request creating it as well is harmless.
+     */
+    public void insertCartIfMissing(Long userId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_CART_IF_MISSING, userId, now, now);
+    }
+
+    public Optional<UpsertedLine> upsertLine(Long userId, Long productId, int quantity, BigDecimal price,
+                                             int maxQuantity) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<UpsertedLine> rows = jdbcTemplate.query(UPSERT_LINE,
+            (rs, rowNum) -> new UpsertedLine(rs.getLong(1), rs.getInt(2), rs.getBoolean(3), rs.getBigDecimal(4)),
+            userId, productId, quantity, price, price.multiply(BigDecimal.valueOf(quantity)), now, now,
+            maxQuantity, quantity, now);
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Inserts lines for products not yet in the cart and returns the new line ids by product id.
+     */
+    public Map<Long, Long> insertLines(Long cartId, long cartVersion, List<NewLine> lines) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long[] productIds = new Long[lines.size()];
+        Integer[] quantities = new Integer[lines.size()];
+        BigDecimal[] prices = new BigDecimal[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            productIds[i] = lines.get(i).productId();
+            quantities[i] = lines.get(i).quantity();
+            prices[i] = lines.get(i).price();
+        }
+
+        return jdbcTemplate.query(INSERT_LINES, ps -> {
+            ps.setLong(1, cartId);
+            ps.setLong(2, cartVersion);
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, now);
+            ps.setArray(5, ps.getConnection().createArrayOf("bigint", productIds));
+            ps.setArray(6, ps.getConnection().createArrayOf("integer", quantities));
+            ps.setArray(7, ps.getConnection().createArrayOf("numeric", prices));
+        }, rs -> {
+            Map<Long, Long> ids = new HashMap<>();
+            while (rs.next()) {
+                ids.put(rs.getLong(2), rs.getLong(1));
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Leaves tombstones for deleted lines so clients syncing by cart version learn about them.
+     */
+    public void recordRemovals(Long cartId, long cartVersion, List<Long> itemIds) {
+        jdbcTemplate.update(RECORD_REMOVALS, ps -> {
+            ps.setLong(1, cartId);
+            ps.setLong(2, cartVersion);
+            ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setArray(4, ps.getConnection().createArrayOf("bigint", itemIds.toArray()));
+        });
+    }
+
+    public int reconcileTotals(LocalDateTime untouchedSince) {
+        return jdbcTemplate.update(RECONCILE_TOTALS, Timestamp.valueOf(LocalDateTime.now()),
+            Timestamp.valueOf(untouchedSince));
+    }
+
+    public ExpiredChunk expireIdleCarts(LocalDateTime idleSince, int maxCarts) {
+        return jdbcTemplate.queryForObject(EXPIRE_IDLE_CARTS,
+            (rs, rowNum) -> new ExpiredChunk(rs.getInt(1), rs.getInt(2)),
+            Timestamp.valueOf(idleSince), maxCarts, Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,21 @@
+package com.portfolio.ecommerce.repository;
+
+import com.portfolio.ecommerce.model.CartItemRemoval;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CartItemRemovalRepository extends JpaRepository<CartItemRemoval, Long> {
+
+    @Query("SELECT r.itemId FROM CartItemRemoval r WHERE r.cartId = :cartId AND r.cartVersion > :sinceVersion")
+    List<Long> findItemIdsRemovedSince(@Param("cartId") Long cartId, @Param("sinceVersion") Long sinceVersion);
+
+    @Modifying
+    @Query("DELETE FROM CartItemRemoval r WHERE r.cartId = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
+}
@@ -2,6 +2,9 @@ package com.portfolio.ecommerce.repository;
 
 import com.portfolio.ecommerce.model.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,7 +15,12 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
     List<CartItem> findByCartId(Long cartId);
     
+    List<CartItem> findByCartIdAndCartVersionGreaterThan(Long cartId, Long cartVersion);
+
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
     
-    void deleteByCartId(Long cartId);
+    // One statement instead of the derived delete, which loads and removes every line in turn
+    @Modifying
+    @Query("DELETE FROM CartItem i WHERE i.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
 }
@@ -3,12 +3,24 @@ package com.portfolio.ecommerce.repository;
 import com.portfolio.ecommerce.model.Cart;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
+
+    interface CartVersionView {
+        Long getId();
+
+        Long getVersion();
+
+        LocalDateTime getUpdatedAt();
+
+        LocalDateTime getProductsUpdatedAt();
+    }
     
     Optional<Cart> findByUserId(Long userId);
     
@@ -16,4 +28,9 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserIdWithItems(Long userId);
     
     Boolean existsByUserId(Long userId);
+
+    @Query("SELECT c.id AS id, c.version AS version, c.updatedAt AS updatedAt, MAX(p.updatedAt) AS productsUpdatedAt " +
+           "FROM Cart c LEFT JOIN c.items i LEFT JOIN i.product p WHERE c.user.id = :userId " +
+           "GROUP BY c.id, c.version, c.updatedAt")
+    Optional<CartVersionView> findVersionByUserId(@Param("userId") Long userId);
 }
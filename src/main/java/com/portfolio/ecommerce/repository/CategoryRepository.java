@@ -2,6 +2,9 @@ package com.portfolio.ecommerce.repository;
 
 import com.portfolio.ecommerce.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +18,24 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> findByActiveTrue();
     
     Boolean existsByName(String name);
+
+    // The count is part of the category, so it moves the version and updatedAt its ETag is built from
+    @Modifying
+    @Query(value = "UPDATE categories SET product_count = product_count + :delta, version = version + 1, " +
+                   "updated_at = LOCALTIMESTAMP WHERE id = :categoryId",
+           nativeQuery = true)
+    int adjustProductCount(@Param("categoryId") Long categoryId, @Param("delta") int delta);
+
+    // Only rows whose count was off are touched, so a restart leaves every ETag as it was
+    @Modifying
+    @Query(value = "UPDATE categories c SET product_count = " +
+                   "(SELECT COUNT(*) FROM products p WHERE p.category_id = c.id), " +
+                   "version = c.version + 1, updated_at = LOCALTIMESTAMP " +
+                   "WHERE c.product_count <> (SELECT COUNT(*) FROM products p WHERE p.category_id = c.id)",
+           nativeQuery = true)
+    int recountProducts();
+
+    @Query("SELECT COUNT(c) AS rowCount, SUM(c.version) AS versionSum, MAX(c.updatedAt) AS lastUpdated " +
+           "FROM Category c WHERE (:activeOnly = false OR c.active = true)")
+    VersionSummary summarizeVersions(@Param("activeOnly") boolean activeOnly);
 }
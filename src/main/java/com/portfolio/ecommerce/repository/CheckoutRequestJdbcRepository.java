@@ -0,0 +1,104 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * State changes of asynchronous checkouts. Each is a conditional update on the status, so a
+ * request is processed once even when several workers or app nodes see its token.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CheckoutRequestJdbcRepository {
+
+    private static final String INSERT_REQUEST =
+        "INSERT INTO checkout_requests (token, user_id, status, created_at, updated_at) VALUES (?, ?, 'QUEUED', ?, ?)";
+
+    private static final String CLAIM_REQUESTS =
+        "UPDATE checkout_requests SET status = 'PROCESSING', updated_at = ? " +
+        " WHERE token = ANY (?) AND status = 'QUEUED' " +
+        "RETURNING token, user_id";
+
+    private static final String START_REQUEST =
+        "UPDATE checkout_requests SET updated_at = ? WHERE token = ? AND status = 'PROCESSING'";
+
+    private static final String COMPLETE_REQUEST =
+        "UPDATE checkout_requests SET status = 'COMPLETED', order_id = ?, updated_at = ? " +
+        " WHERE token = ? AND status = 'PROCESSING'";
+
+    private static final String FAIL_REQUEST =
+        "UPDATE checkout_requests SET status = 'FAILED', error = ?, updated_at = ? " +
+        " WHERE token = ? AND status = 'PROCESSING'";
+
+    // A request still PROCESSING this long after its checkout started lost its worker with the node;
+    // its order never committed, since completion commits together with the order
+    private static final String REQUEUE_STALE =
+        "UPDATE checkout_requests SET status = 'QUEUED', updated_at = ? " +
+        " WHERE status = 'PROCESSING' AND updated_at < ?";
+
+    private static final String SELECT_WAITING =
+        "SELECT token FROM checkout_requests WHERE status = 'QUEUED' AND updated_at < ? " +
+        " ORDER BY updated_at LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Claimed(UUID token, Long userId) {
+    }
+
+    public void insert(UUID token, Long userId, LocalDateTime timestamp) {
+        Timestamp now = Timestamp.valueOf(timestamp);
+        jdbcTemplate.update(INSERT_REQUEST, token, userId, now, now);
+    }
+
+    /**
+     * Moves the given requests from QUEUED to PROCESSING and returns the ones this call won.
+     */
+    public List<Claimed> claim(Collection<UUID> tokens, LocalDateTime timestamp) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CLAIM_REQUESTS);
+            ps.setTimestamp(1, Timestamp.valueOf(timestamp));
+            ps.setArray(2, con.createArrayOf("uuid", tokens.toArray()));
+            return ps;
+        }, (rs, rowNum) -> new Claimed(rs.getObject("token", UUID.class), rs.getLong("user_id")));
+    }
+
+    /**
+     * Marks a claimed request as being worked on now, so the stale cutoff counts from the start of
+     * its own checkout rather than from the claim of its batch. False if it was requeued meanwhile.
+     */
+    public boolean start(UUID token, LocalDateTime timestamp) {
+        return jdbcTemplate.update(START_REQUEST, Timestamp.valueOf(timestamp), token) == 1;
+    }
+
+    /**
+     * False if the request is no longer PROCESSING, having been requeued and settled elsewhere;
+     * the caller then rolls back the order it placed.
+     */
+    public boolean complete(UUID token, Long orderId, LocalDateTime timestamp) {
+        return jdbcTemplate.update(COMPLETE_REQUEST, orderId, Timestamp.valueOf(timestamp), token) == 1;
+    }
+
+    public void fail(UUID token, String error, LocalDateTime timestamp) {
+        jdbcTemplate.update(FAIL_REQUEST, error, Timestamp.valueOf(timestamp), token);
+    }
+
+    public int requeueStale(LocalDateTime claimedBefore, LocalDateTime timestamp) {
+        return jdbcTemplate.update(REQUEUE_STALE, Timestamp.valueOf(timestamp), Timestamp.valueOf(claimedBefore));
+    }
+
+    /**
+     * Oldest QUEUED requests not touched since the cutoff, which are the ones no in-memory
+     * queue is known to hold.
+     */
+    public List<UUID> findWaiting(LocalDateTime untouchedSince, int limit) {
+        return jdbcTemplate.queryForList(SELECT_WAITING, UUID.class, Timestamp.valueOf(untouchedSince), limit);
+    }
+}
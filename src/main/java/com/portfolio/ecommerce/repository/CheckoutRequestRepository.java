@@ -0,0 +1,14 @@
+package com.portfolio.ecommerce.repository;
+
+import com.portfolio.ecommerce.model.CheckoutRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface CheckoutRequestRepository extends JpaRepository<CheckoutRequest, UUID> {
+
+    Optional<CheckoutRequest> findByTokenAndUserId(UUID token, Long userId);
+}
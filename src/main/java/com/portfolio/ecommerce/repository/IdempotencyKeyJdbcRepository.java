@@ -0,0 +1,87 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Storage behind Idempotency-Key handling. A key is claimed with an insert before its request
+ * runs, so across app nodes only one execution per key gets past the claim.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyJdbcRepository {
+
+    // Takes over rows past their TTL, and pending rows whose node never finished them
+    private static final String CLAIM_KEY =
+        "INSERT INTO idempotency_keys (user_id, idempotency_key, fingerprint, created_at, expires_at) " +
+        "VALUES (?, ?, ?, ?, ?) " +
+        "ON CONFLICT (user_id, idempotency_key) DO UPDATE " +
+        "   SET fingerprint = EXCLUDED.fingerprint, status_code = NULL, content_type = NULL, " +
+        "       response_headers = NULL, response_body = NULL, " +
+        "       created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at " +
+        " WHERE idempotency_keys.expires_at <= EXCLUDED.created_at " +
+        "    OR (idempotency_keys.status_code IS NULL AND idempotency_keys.created_at < ?)";
+
+    private static final String COMPLETE_KEY =
+        "UPDATE idempotency_keys SET status_code = ?, content_type = ?, response_headers = ?, response_body = ? " +
+        " WHERE user_id = ? AND idempotency_key = ?";
+
+    private static final String RELEASE_KEY =
+        "DELETE FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ? AND status_code IS NULL";
+
+    private static final String SELECT_KEY =
+        "SELECT fingerprint, status_code, content_type, response_headers, response_body " +
+        "  FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ? AND expires_at > ?";
+
+    private static final String DELETE_EXPIRED =
+        "DELETE FROM idempotency_keys WHERE expires_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * A key's row; statusCode is null while its request is still running.
+     */
+    public record StoredKey(String fingerprint, Integer statusCode, String contentType, String headers,
+                            byte[] body) {
+    }
+
+    /**
+     * Claims the key for one execution. False when another execution holds it or already
+     * recorded its response.
+     */
+    public boolean claim(Long userId, String key, String fingerprint, LocalDateTime timestamp,
+                         LocalDateTime expiresAt, LocalDateTime pendingSince) {
+        return jdbcTemplate.update(CLAIM_KEY, userId, key, fingerprint, Timestamp.valueOf(timestamp),
+            Timestamp.valueOf(expiresAt), Timestamp.valueOf(pendingSince)) > 0;
+    }
+
+    public void complete(Long userId, String key, int statusCode, String contentType, String headers, byte[] body) {
+        jdbcTemplate.update(COMPLETE_KEY, statusCode, contentType, headers, body, userId, key);
+    }
+
+    /**
+     * Gives up a claim whose execution produced nothing worth replaying, so a retry runs again.
+     */
+    public void release(Long userId, String key) {
+        jdbcTemplate.update(RELEASE_KEY, userId, key);
+    }
+
+    public Optional<StoredKey> find(Long userId, String key, LocalDateTime now) {
+        return jdbcTemplate.query(SELECT_KEY, (rs, rowNum) -> new StoredKey(
+                rs.getString("fingerprint"),
+                (Integer) rs.getObject("status_code"),
+                rs.getString("content_type"),
+                rs.getString("response_headers"),
+                rs.getBytes("response_body")),
+            userId, key, Timestamp.valueOf(now)).stream().findFirst();
+    }
+
+    public int deleteExpired(LocalDateTime now) {
+        return jdbcTemplate.update(DELETE_EXPIRED, Timestamp.valueOf(now));
+    }
+}
@@ -0,0 +1,58 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Acquires and releases rows in job_leases. Expiry is compared against the database clock, so
+ * nodes with skewed clocks still agree on who holds a lease.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobLeaseJdbcRepository {
+
+    // Takes the lease when it is free, expired or already ours; the conditional upsert makes the
+    // check and the take one atomic step
+    private static final String TRY_ACQUIRE =
+        "INSERT INTO job_leases (name, owner, leased_until) " +
+        "VALUES (?, ?, localtimestamp + make_interval(secs => ?)) " +
+        "ON CONFLICT (name) DO UPDATE " +
+        "   SET owner = EXCLUDED.owner, leased_until = EXCLUDED.leased_until " +
+        " WHERE job_leases.leased_until < localtimestamp OR job_leases.owner = EXCLUDED.owner";
+
+    private static final String RELEASE =
+        "UPDATE job_leases SET leased_until = localtimestamp WHERE name = ? AND owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Owner name for one scheduler instance: the host name for people reading the table, plus a
+     * random part so two instances on one host never share a lease.
+     */
+    public static String newOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            host = "unknown-host";
+        }
+        return host + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Takes or extends the named lease; false when another owner holds it.
+     */
+    public boolean tryAcquire(String name, String owner, Duration duration) {
+        return jdbcTemplate.update(TRY_ACQUIRE, name, owner, duration.toMillis() / 1000.0) == 1;
+    }
+
+    public void release(String name, String owner) {
+        jdbcTemplate.update(RELEASE, name, owner);
+    }
+}
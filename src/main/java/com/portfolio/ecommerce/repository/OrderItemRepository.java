@@ -2,8 +2,35 @@ package com.portfolio.ecommerce.repository;
 
 import com.portfolio.ecommerce.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    interface ProductSalesView {
+        Long getProductId();
+
+        Long getUnitsSold();
+    }
+
+    interface OrderItemCountView {
+        Long getOrderId();
+
+        Long getItemCount();
+    }
+
+    @Query("SELECT oi.product.id AS productId, SUM(oi.quantity) AS unitsSold FROM OrderItem oi GROUP BY oi.product.id")
+    List<ProductSalesView> sumQuantityByProduct();
+
+    @Query("SELECT oi FROM OrderItem oi JOIN FETCH oi.product WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<OrderItem> findWithProductByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT oi.order.id AS orderId, COUNT(oi) AS itemCount FROM OrderItem oi " +
+           "WHERE oi.order.id IN :orderIds GROUP BY oi.order.id")
+    List<OrderItemCountView> countByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
 }
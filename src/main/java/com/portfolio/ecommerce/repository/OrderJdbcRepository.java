@@ -0,0 +1,91 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Checkout as set-based SQL: the cart's lines move into a new order in one statement, so the
+ * number of round trips does not grow with the number of lines.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderJdbcRepository {
+
+    private static final String LOCK_CART = "SELECT id FROM carts WHERE user_id = ? FOR UPDATE";
+
+    // Deletes the cart lines and inserts them as order lines, with the header totals summed from
+    // the same rows; the cart is reset as a clear would. An empty cart inserts nothing and
+    // returns no rows. Tax is rounded to cents like the numeric(38,2) columns would round it.
+    // Each line comes back with its product's name and image, so the response needs no lookups.
+    private static final String CHECKOUT_CART =
+        "WITH cart AS (" +
+        "  SELECT id FROM carts WHERE user_id = ?" +
+        "), lines AS (" +
+        "  DELETE FROM cart_items i USING cart WHERE i.cart_id = cart.id " +
+        "  RETURNING i.product_id, i.quantity, i.price, i.subtotal" +
+        "), totals AS (" +
+        "  SELECT sum(subtotal) AS subtotal, round(sum(subtotal) * ?, 2) AS tax FROM lines HAVING count(*) > 0" +
+        "), header AS (" +
+        "  INSERT INTO orders (user_id, subtotal, tax, total_price, status, order_date, created_at, updated_at) " +
+        "  SELECT ?, t.subtotal, t.tax, t.subtotal + t.tax, 'PENDING', ?, ?, ? FROM totals t " +
+        "  RETURNING id, subtotal, tax, total_price, order_date" +
+        "), items AS (" +
+        "  INSERT INTO order_items (order_id, product_id, quantity, price, subtotal) " +
+        "  SELECT header.id, lines.product_id, lines.quantity, lines.price, lines.subtotal FROM header, lines " +
+        "  RETURNING id, product_id, quantity, price, subtotal" +
+        "), tombstones AS (" +
+        "  DELETE FROM cart_item_removals r USING cart, totals WHERE r.cart_id = cart.id" +
+        "), reset AS (" +
+        "  UPDATE carts c SET total_price = 0, item_count = 0, version = c.version + 1, " +
+        "         cleared_version = c.version + 1, updated_at = ? " +
+        "    FROM cart, totals WHERE c.id = cart.id" +
+        ") " +
+        "SELECT h.id, h.subtotal, h.tax, h.total_price, h.order_date, " +
+        "       i.id AS item_id, i.product_id, i.quantity, i.price, i.subtotal AS item_subtotal, " +
+        "       p.name AS product_name, p.image_url AS product_image_url " +
+        "  FROM header h, items i JOIN products p ON p.id = i.product_id ORDER BY i.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record CheckedOutOrder(Long id, BigDecimal subtotal, BigDecimal tax, BigDecimal totalPrice,
+                                  LocalDateTime orderDate, List<Line> lines) {
+    }
+
+    public record Line(Long id, Long productId, String productName, String productImageUrl, int quantity,
+                       BigDecimal price, BigDecimal subtotal) {
+    }
+
+    /**
+     * Turns the user's cart into a PENDING order and empties the cart. Returns empty when the
+     * user has no cart or no lines in it.
+     */
+    public Optional<CheckedOutOrder> checkoutCart(Long userId, BigDecimal taxRate, LocalDateTime timestamp) {
+        // Locked in its own statement, so the checkout below sees lines committed while it waited
+        if (jdbcTemplate.queryForList(LOCK_CART, Long.class, userId).isEmpty()) {
+            return Optional.empty();
+        }
+
+        Timestamp now = Timestamp.valueOf(timestamp);
+        List<Line> lines = new ArrayList<>();
+        CheckedOutOrder[] order = {null};
+        jdbcTemplate.query(CHECKOUT_CART, rs -> {
+            if (order[0] == null) {
+                order[0] = new CheckedOutOrder(rs.getLong("id"), rs.getBigDecimal("subtotal"),
+                    rs.getBigDecimal("tax"), rs.getBigDecimal("total_price"),
+                    rs.getObject("order_date", LocalDateTime.class), lines);
+            }
+            lines.add(new Line(rs.getLong("item_id"), rs.getLong("product_id"), rs.getString("product_name"),
+                rs.getString("product_image_url"), rs.getInt("quantity"), rs.getBigDecimal("price"),
+                rs.getBigDecimal("item_subtotal")));
+        }, userId, taxRate, userId, now, now, now, now);
+        return Optional.ofNullable(order[0]);
+    }
+}
@@ -1,15 +1,36 @@
 package com.portfolio.ecommerce.repository;
 
 import com.portfolio.ecommerce.model.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.orderDate DESC")
-    List<Order> findByUserIdOrderByOrderDateDesc(@Param("userId") Long userId);
+
+    /**
+     * One page of the user's order headers, newest first, seeking past the (orderDate, id) of the
+     * previous page's last order. Served by idx_orders_user_date.
+     */
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId " +
+           "AND (:beforeDate IS NULL OR o.orderDate < :beforeDate " +
+           "OR (o.orderDate = :beforeDate AND o.id < :beforeId)) " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findByUserIdOrderByOrderDateDesc(@Param("userId") Long userId,
+                                                 @Param("beforeDate") LocalDateTime beforeDate,
+                                                 @Param("beforeId") Long beforeId,
+                                                 Pageable pageable);
+
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product " +
+           "WHERE o.user.id = :userId ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findWithItemsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id = :id")
+    Optional<Order> findWithItemsById(@Param("id") Long id);
 }
@@ -0,0 +1,145 @@
+package com.portfolio.ecommerce.repository;
+
+import com.portfolio.ecommerce.dto.ProductRequest;
+import com.portfolio.ecommerce.dto.ProductResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Plain JDBC access for bulk product writes, where going through the entity manager would mean
+ * one IDENTITY round trip per row.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductJdbcRepository {
+
+    private static final String INSERT_PRODUCT =
+        "INSERT INTO products (name, description, price, stock_quantity, image_url, sku, active, category_id, "
+            + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Takes stock only if enough is left beyond other shoppers' holds; a row count of 0 means the
+    // line was short. Bumps the version and updated_at so ETags and the cart's product dependency
+    // see the change. Striped products never match, their stock is taken from product_stock_stripes.
+    private static final String DECREMENT_STOCK =
+        "UPDATE products p SET stock_quantity = p.stock_quantity - ?, version = p.version + 1, updated_at = ? "
+            + "WHERE p.id = ? AND p.stock_stripes = 0 AND p.stock_quantity - coalesce(("
+            + "SELECT sum(r.quantity) FROM stock_reservations r "
+            + "WHERE r.product_id = p.id AND r.user_id <> ? AND r.expires_at > ?), 0) >= ?";
+
+    private static final String LOCK_PRODUCTS =
+        "SELECT id FROM products WHERE id = ANY (?) ORDER BY id FOR NO KEY UPDATE";
+
+    private static final String SELECT_PRODUCTS =
+        "SELECT p.id, p.name, p.description, p.price, p.stock_quantity, p.stock_stripes, p.image_url, p.sku, p.active, "
+            + "p.category_id, c.name AS category_name, p.version, p.created_at, p.updated_at "
+            + "FROM products p LEFT JOIN categories c ON c.id = p.category_id WHERE p.id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Set<String> findAllSkus() {
+        Set<String> skus = new HashSet<>();
+        jdbcTemplate.query("SELECT sku FROM products WHERE sku IS NOT NULL", rs -> {
+            skus.add(rs.getString(1));
+        });
+        return skus;
+    }
+
+    public void insertBatch(List<ProductRequest> products, LocalDateTime timestamp) {
+        Timestamp now = Timestamp.valueOf(timestamp);
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, products, products.size(), (ps, product) -> {
+            ps.setString(1, product.getName());
+            ps.setString(2, product.getDescription());
+            ps.setBigDecimal(3, product.getPrice());
+            ps.setInt(4, product.getStockQuantity());
+            ps.setString(5, product.getImageUrl());
+            if (product.getSku() != null) {
+                ps.setString(6, product.getSku());
+            } else {
+                ps.setNull(6, Types.VARCHAR);
+            }
+            ps.setBoolean(7, product.getActive() == null || product.getActive());
+            ps.setLong(8, product.getCategoryId());
+            ps.setTimestamp(9, now);
+            ps.setTimestamp(10, now);
+        });
+    }
+
+    /**
+     * Decrements stock for each product id to quantity entry as one JDBC batch, leaving stock held
+     * by shoppers other than userId alone. Returns the ids whose row did not have enough stock and
+     * was left unchanged.
+     */
+    public List<Long> decrementStock(SortedMap<Long, Integer> quantities, Long userId, LocalDateTime timestamp) {
+        // Rows are locked in id order up front, in their own statement, so the hold sums in the
+        // batch see holds committed while the locks were awaited
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_PRODUCTS);
+            ps.setArray(1, con.createArrayOf("bigint", quantities.keySet().toArray()));
+            return ps;
+        }, rs -> {
+        });
+
+        Timestamp now = Timestamp.valueOf(timestamp);
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        int[][] counts = jdbcTemplate.batchUpdate(DECREMENT_STOCK, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, line.getKey());
+            ps.setLong(4, userId);
+            ps.setTimestamp(5, now);
+            ps.setInt(6, line.getValue());
+        });
+
+        List<Long> shortIds = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    shortIds.add(lines.get(index).getKey());
+                }
+                index++;
+            }
+        }
+        return shortIds;
+    }
+
+    /**
+     * Reads products straight from the table, bypassing the persistence context, for callers
+     * that changed them with SQL in the current transaction.
+     */
+    public List<ProductResponse> findByIds(Collection<Long> ids) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_PRODUCTS);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, (rs, rowNum) -> ProductResponse.builder()
+            .id(rs.getLong("id"))
+            .name(rs.getString("name"))
+            .description(rs.getString("description"))
+            .price(rs.getBigDecimal("price"))
+            .stockQuantity(rs.getInt("stock_quantity"))
+            .stockStripes(rs.getInt("stock_stripes"))
+            .imageUrl(rs.getString("image_url"))
+            .sku(rs.getString("sku"))
+            .active(rs.getBoolean("active"))
+            .categoryId(rs.getObject("category_id", Long.class))
+            .categoryName(rs.getString("category_name"))
+            .version(rs.getLong("version"))
+            .createdAt(rs.getObject("created_at", LocalDateTime.class))
+            .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
+            .build());
+    }
+}
@@ -1,16 +1,30 @@
 package com.portfolio.ecommerce.repository;
 
 import com.portfolio.ecommerce.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    interface ProductNameView {
+        Long getId();
+
+        String getName();
+    }
     
     List<Product> findByActiveTrue();
     
@@ -25,4 +39,126 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> searchByName(@Param("keyword") String keyword);
     
     Boolean existsBySku(String sku);
+
+    boolean existsByCategoryId(Long categoryId);
+
+    // Read variants that fetch the category in the same statement, so mapping a list of
+    // products to responses does not fire one category SELECT per row
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category")
+    List<Product> findAllWithCategory();
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.active = true")
+    List<Product> findActiveWithCategory();
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.category c WHERE c.id = :categoryId AND p.active = true")
+    List<Product> findActiveByCategoryIdWithCategory(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id = :id")
+    Optional<Product> findWithCategoryById(@Param("id") Long id);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Forward-only cursor for exports: rows arrive from the driver in fetch-size chunks instead of
+    // being materialized up front. Needs an open transaction and must be closed by the caller.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:activeOnly = false OR p.active = true) " +
+           "ORDER BY p.id ASC")
+    Stream<Product> streamForExport(@Param("activeOnly") boolean activeOnly);
+
+    @Query("SELECT COUNT(p) AS rowCount, SUM(p.version) AS versionSum, MAX(p.updatedAt) AS lastUpdated " +
+           "FROM Product p WHERE (:activeOnly = false OR p.active = true) " +
+           "AND (:categoryId IS NULL OR p.category.id = :categoryId)")
+    VersionSummary summarizeVersions(@Param("activeOnly") boolean activeOnly, @Param("categoryId") Long categoryId);
+
+    @Query("SELECT p.id AS id, p.name AS name FROM Product p WHERE p.active = true")
+    List<ProductNameView> findActiveProductNames();
+
+    // Keyset pages: the caller passes the sort key and id of the last row it has seen and
+    // sizes the window through the Pageable, so deep pages cost the same as the first one.
+    // First pages and category pages have queries of their own, so the seek is always a plain
+    // row-value range on the index the ORDER BY walks, never hidden behind an IS NULL OR that a
+    // generic plan cannot use. Category pages only ever list active products.
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:activeOnly = false OR p.active = true) " +
+           "AND (:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND p.id > :afterId " +
+           "ORDER BY p.id ASC")
+    List<Product> findPageOrderById(@Param("activeOnly") boolean activeOnly,
+                                    @Param("keyword") String keyword,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.category.id = :categoryId " +
+           "AND p.active = true AND p.id > :afterId " +
+           "ORDER BY p.id ASC")
+    List<Product> findCategoryPageOrderById(@Param("categoryId") Long categoryId,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:activeOnly = false OR p.active = true) " +
+           "AND (:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "ORDER BY p.price ASC, p.id ASC")
+    List<Product> findFirstPageOrderByPrice(@Param("activeOnly") boolean activeOnly,
+                                            @Param("keyword") String keyword,
+                                            Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:activeOnly = false OR p.active = true) " +
+           "AND (:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND (p.price, p.id) > (:afterPrice, :afterId) " +
+           "ORDER BY p.price ASC, p.id ASC")
+    List<Product> findPageOrderByPrice(@Param("activeOnly") boolean activeOnly,
+                                       @Param("keyword") String keyword,
+                                       @Param("afterPrice") BigDecimal afterPrice,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.category.id = :categoryId " +
+           "AND p.active = true " +
+           "ORDER BY p.price ASC, p.id ASC")
+    List<Product> findFirstCategoryPageOrderByPrice(@Param("categoryId") Long categoryId,
+                                                    Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.category.id = :categoryId " +
+           "AND p.active = true AND (p.price, p.id) > (:afterPrice, :afterId) " +
+           "ORDER BY p.price ASC, p.id ASC")
+    List<Product> findCategoryPageOrderByPrice(@Param("categoryId") Long categoryId,
+                                               @Param("afterPrice") BigDecimal afterPrice,
+                                               @Param("afterId") Long afterId,
+                                               Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:activeOnly = false OR p.active = true) " +
+           "AND (:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Product> findFirstPageOrderByCreatedAt(@Param("activeOnly") boolean activeOnly,
+                                                @Param("keyword") String keyword,
+                                                Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:activeOnly = false OR p.active = true) " +
+           "AND (:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND (p.createdAt, p.id) > (:afterCreatedAt, :afterId) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Product> findPageOrderByCreatedAt(@Param("activeOnly") boolean activeOnly,
+                                           @Param("keyword") String keyword,
+                                           @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                           @Param("afterId") Long afterId,
+                                           Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.category.id = :categoryId " +
+           "AND p.active = true " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Product> findFirstCategoryPageOrderByCreatedAt(@Param("categoryId") Long categoryId,
+                                                        Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.category.id = :categoryId " +
+           "AND p.active = true AND (p.createdAt, p.id) > (:afterCreatedAt, :afterId) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Product> findCategoryPageOrderByCreatedAt(@Param("categoryId") Long categoryId,
+                                                   @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                   @Param("afterId") Long afterId,
+                                                   Pageable pageable);
 }
@@ -0,0 +1,172 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Stock sub-counters of hot products. Plain JDBC since every write here is a conditional or
+ * locking statement that the entity manager has no way to express.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductStockStripeJdbcRepository {
+
+    private static final String SELECT_STRIPE_COUNTS =
+        "SELECT id, stock_stripes FROM products WHERE id = ANY (?) AND stock_stripes > 0";
+
+    // Units the buyer held on the stripe count as theirs, so a drained stripe still sells them.
+    // The condition reads only the stripe's own columns, which Postgres re-checks against the
+    // latest row version after waiting on a concurrent buyer.
+    private static final String TAKE_FROM_STRIPE =
+        "UPDATE product_stock_stripes SET quantity = quantity + ? - ?, held = held - ? "
+            + "WHERE product_id = ? AND stripe = ? AND quantity + ? >= ?";
+
+    private static final String HOLD_ON_STRIPE =
+        "UPDATE product_stock_stripes SET quantity = quantity + ? - ?, held = held - ? + ? "
+            + "WHERE product_id = ? AND stripe = ? AND quantity + ? >= ?";
+
+    private static final String LOCK_STRIPES =
+        "SELECT quantity, held FROM product_stock_stripes WHERE product_id = ? ORDER BY stripe FOR UPDATE";
+
+    private static final String SET_STRIPE =
+        "UPDATE product_stock_stripes SET quantity = ?, held = ? WHERE product_id = ? AND stripe = ?";
+
+    private static final String INSERT_STRIPE =
+        "INSERT INTO product_stock_stripes (product_id, stripe, quantity, held) VALUES (?, ?, ?, ?)";
+
+    private static final String LOCK_PRODUCT =
+        "SELECT stock_quantity, stock_stripes FROM products WHERE id = ? FOR UPDATE";
+
+    private static final String UPDATE_PRODUCT_STRIPES =
+        "UPDATE products SET stock_stripes = ?, stock_quantity = ?, version = version + 1, updated_at = ? "
+            + "WHERE id = ?";
+
+    // Only touches products whose total actually moved, so idle hot products keep their version
+    private static final String ROLL_UP_TOTALS =
+        "UPDATE products p SET stock_quantity = s.total, version = p.version + 1, updated_at = ? "
+            + "FROM (SELECT product_id, sum(quantity + held) AS total FROM product_stock_stripes GROUP BY product_id) s "
+            + "WHERE p.id = s.product_id AND p.stock_stripes > 0 AND p.stock_quantity <> s.total "
+            + "RETURNING p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record ProductStock(int stockQuantity, int stripes) {
+    }
+
+    /**
+     * Units left to sell and units held on each stripe of a product, indexed by stripe number.
+     */
+    public record Stripes(int[] quantities, int[] held) {
+
+        public int count() {
+            return quantities.length;
+        }
+    }
+
+    /**
+     * Returns the stripe count of each striped product among the given ids; products missing from
+     * the map keep their stock on the product row.
+     */
+    public Map<Long, Integer> findStripeCounts(Collection<Long> productIds) {
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_STRIPE_COUNTS);
+            ps.setArray(1, con.createArrayOf("bigint", productIds.toArray()));
+            return ps;
+        }, rs -> {
+            counts.put(rs.getLong("id"), rs.getInt("stock_stripes"));
+        });
+        return counts;
+    }
+
+    /**
+     * Takes quantity from the stripe, releasing the given units the buyer held on it in the same
+     * statement. Returns false, having locked nothing, when the stripe cannot cover the rest.
+     */
+    public boolean tryTake(Long productId, int stripe, int quantity, int released) {
+        return jdbcTemplate.update(TAKE_FROM_STRIPE,
+            released, quantity, released, productId, stripe, released, quantity) > 0;
+    }
+
+    /**
+     * Moves quantity units of the stripe from sellable to held, in place of the given units the
+     * shopper held there before. Returns false, having locked nothing, when the stripe is too low.
+     */
+    public boolean tryHold(Long productId, int stripe, int quantity, int released) {
+        return jdbcTemplate.update(HOLD_ON_STRIPE,
+            released, quantity, released, quantity, productId, stripe, released, quantity) > 0;
+    }
+
+    /**
+     * Locks every stripe of the product, always in stripe order so two borrowers cannot deadlock,
+     * and returns their counts in that order.
+     */
+    public Stripes lockStripes(Long productId) {
+        List<int[]> rows = jdbcTemplate.query(LOCK_STRIPES,
+            (rs, rowNum) -> new int[] {rs.getInt("quantity"), rs.getInt("held")}, productId);
+        return new Stripes(rows.stream().mapToInt(row -> row[0]).toArray(),
+            rows.stream().mapToInt(row -> row[1]).toArray());
+    }
+
+    public void setStripes(Long productId, Stripes stripes) {
+        jdbcTemplate.batchUpdate(SET_STRIPE, stripeNumbers(stripes), stripes.count(), (ps, stripe) -> {
+            ps.setInt(1, stripes.quantities()[stripe]);
+            ps.setInt(2, stripes.held()[stripe]);
+            ps.setLong(3, productId);
+            ps.setInt(4, stripe);
+        });
+    }
+
+    /**
+     * Drops the product's stripes and, unless stripes is empty, writes a fresh set. Callers must
+     * hold the product row lock.
+     */
+    public void replaceStripes(Long productId, Stripes stripes) {
+        deleteStripes(productId);
+        if (stripes.count() == 0) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_STRIPE, stripeNumbers(stripes), stripes.count(), (ps, stripe) -> {
+            ps.setLong(1, productId);
+            ps.setInt(2, stripe);
+            ps.setInt(3, stripes.quantities()[stripe]);
+            ps.setInt(4, stripes.held()[stripe]);
+        });
+    }
+
+    public void deleteStripes(Long productId) {
+        jdbcTemplate.update("DELETE FROM product_stock_stripes WHERE product_id = ?", productId);
+    }
+
+    public ProductStock lockProduct(Long productId) {
+        List<ProductStock> rows = jdbcTemplate.query(LOCK_PRODUCT,
+            (rs, rowNum) -> new ProductStock(rs.getInt("stock_quantity"), rs.getInt("stock_stripes")), productId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public void updateProductStripes(Long productId, int stripes, int stockQuantity, LocalDateTime timestamp) {
+        jdbcTemplate.update(UPDATE_PRODUCT_STRIPES, stripes, stockQuantity, Timestamp.valueOf(timestamp), productId);
+    }
+
+    /**
+     * Copies each striped product's stripe total into products.stock_quantity, which is what every
+     * read path reports. Returns the ids of the products that changed.
+     */
+    public List<Long> rollUpTotals(LocalDateTime timestamp) {
+        return jdbcTemplate.queryForList(ROLL_UP_TOTALS, Long.class, Timestamp.valueOf(timestamp));
+    }
+
+    private static List<Integer> stripeNumbers(Stripes stripes) {
+        return IntStream.range(0, stripes.count()).boxed().toList();
+    }
+}
@@ -0,0 +1,245 @@
+package com.portfolio.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Stock holds of cart lines. Every read counts only holds that have not expired yet, so rows
+ * waiting to be deleted never block a sale.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockReservationJdbcRepository {
+
+    private static final int RECOVERY_FETCH_SIZE = 10000;
+
+    private static final String HELD_BY_OTHERS =
+        "coalesce((SELECT sum(r.quantity) FROM stock_reservations r "
+            + "WHERE r.product_id = p.id AND r.user_id <> ? AND r.expires_at > ?), 0)";
+
+    // Striped products hold stock on their stripes, so their row is neither returned nor locked. NO KEY UPDATE
+    // leaves the key-share locks of cart line inserts referencing the product unblocked.
+    private static final String LOCK_AVAILABLE =
+        "SELECT p.stock_quantity FROM products p WHERE p.id = ? AND p.stock_stripes = 0 FOR NO KEY UPDATE";
+
+    private static final String SUM_HELD_BY_OTHERS =
+        "SELECT coalesce(sum(quantity), 0) FROM stock_reservations "
+            + "WHERE product_id = ? AND user_id <> ? AND expires_at > ?";
+
+    private static final String SELECT_AVAILABLE =
+        "SELECT p.id, p.stock_quantity - " + HELD_BY_OTHERS + " AS available FROM products p WHERE p.id = ANY (?)";
+
+    private static final String UPSERT_HOLD =
+        "INSERT INTO stock_reservations (user_id, product_id, quantity, expires_at, stripe) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT (user_id, product_id) DO UPDATE "
+            + "SET quantity = EXCLUDED.quantity, expires_at = EXCLUDED.expires_at, stripe = EXCLUDED.stripe";
+
+    // Follows a deleted CTE: units of deleted holds on stripes go back to what the stripe sells
+    private static final String RETURN_TO_STRIPES =
+        ", returned AS (SELECT product_id, stripe, sum(quantity) AS quantity FROM deleted "
+            + "WHERE stripe IS NOT NULL GROUP BY product_id, stripe), "
+            + "restocked AS (UPDATE product_stock_stripes s SET quantity = s.quantity + r.quantity, "
+            + "held = s.held - r.quantity FROM returned r "
+            + "WHERE s.product_id = r.product_id AND s.stripe = r.stripe RETURNING s.stripe) "
+            + "SELECT count(*) FROM deleted";
+
+    private static final String DELETE_HOLD =
+        "WITH deleted AS (DELETE FROM stock_reservations WHERE user_id = ? AND product_id = ? "
+            + "RETURNING product_id, stripe, quantity)" + RETURN_TO_STRIPES;
+
+    private static final String DELETE_HOLDS =
+        "WITH deleted AS (DELETE FROM stock_reservations WHERE user_id = ? "
+            + "RETURNING product_id, stripe, quantity)" + RETURN_TO_STRIPES;
+
+    // Conditional, so a hold renewed after it was scheduled for expiry survives the old timer.
+    // Holds their owner has locked are skipped: the owner is replacing or checking out that hold
+    // and passes its units on, and waiting here while holding stripe locks could deadlock.
+    private static final String DELETE_EXPIRED_HOLDS =
+        "WITH due AS (SELECT r.user_id, r.product_id FROM stock_reservations r "
+            + "JOIN unnest(?, ?) AS d(user_id, product_id) ON r.user_id = d.user_id AND r.product_id = d.product_id "
+            + "WHERE r.expires_at <= ? FOR UPDATE OF r SKIP LOCKED), "
+            + "deleted AS (DELETE FROM stock_reservations r USING due "
+            + "WHERE r.user_id = due.user_id AND r.product_id = due.product_id "
+            + "RETURNING r.product_id, r.stripe, r.quantity)" + RETURN_TO_STRIPES;
+
+    private static final String DELETE_ALL_EXPIRED_HOLDS =
+        "WITH due AS (SELECT user_id, product_id FROM stock_reservations WHERE expires_at <= ? "
+            + "FOR UPDATE SKIP LOCKED), "
+            + "deleted AS (DELETE FROM stock_reservations r USING due "
+            + "WHERE r.user_id = due.user_id AND r.product_id = due.product_id "
+            + "RETURNING r.product_id, r.stripe, r.quantity)" + RETURN_TO_STRIPES;
+
+    // Called with all stripes of the product locked, hence SKIP LOCKED as above
+    private static final String DELETE_EXPIRED_ON_STRIPES =
+        "DELETE FROM stock_reservations WHERE (user_id, product_id) IN (SELECT user_id, product_id "
+            + "FROM stock_reservations WHERE product_id = ? AND stripe IS NOT NULL AND expires_at <= ? "
+            + "FOR UPDATE SKIP LOCKED) RETURNING product_id, stripe, quantity";
+
+    private static final String ASSIGN_STRIPES =
+        "UPDATE stock_reservations SET stripe = CAST(mod(user_id, ?) AS integer) WHERE product_id = ? "
+            + "RETURNING product_id, stripe, quantity";
+
+    // Null for a hold counted against the product row
+    private static final RowMapper<StripeHold> STRIPE_HOLD_ROW = (rs, rowNum) -> {
+        int stripe = rs.getInt("stripe");
+        return rs.wasNull() ? null : new StripeHold(rs.getLong("product_id"), stripe, rs.getInt("quantity"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Hold(Long userId, Long productId, LocalDateTime expiresAt) {
+    }
+
+    /**
+     * Units of a product held on one of its stripes.
+     */
+    public record StripeHold(Long productId, int stripe, int quantity) {
+    }
+
+    /**
+     * Locks the product row and returns its stock minus what other shoppers hold, or null for a
+     * striped or missing product. The lock is taken in its own statement so the sum that follows
+     * sees holds committed while this one waited.
+     */
+    public Integer lockAvailable(Long productId, Long userId, LocalDateTime now) {
+        List<Integer> stock = jdbcTemplate.queryForList(LOCK_AVAILABLE, Integer.class, productId);
+        if (stock.isEmpty()) {
+            return null;
+        }
+        Integer held = jdbcTemplate.queryForObject(SUM_HELD_BY_OTHERS, Integer.class,
+            productId, userId, Timestamp.valueOf(now));
+        return stock.get(0) - held;
+    }
+
+    /**
+     * Stock minus what other shoppers hold, for each existing product among the ids, without
+     * taking locks.
+     */
+    public Map<Long, Integer> findAvailable(Long userId, Collection<Long> productIds, LocalDateTime now) {
+        Map<Long, Integer> available = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_AVAILABLE);
+            ps.setLong(1, userId);
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            ps.setArray(3, con.createArrayOf("bigint", productIds.toArray()));
+            return ps;
+        }, rs -> {
+            available.put(rs.getLong("id"), rs.getInt("available"));
+        });
+        return available;
+    }
+
+    public void upsertHold(Long userId, Long productId, int quantity, LocalDateTime expiresAt, Integer stripe) {
+        jdbcTemplate.update(UPSERT_HOLD, userId, productId, quantity, Timestamp.valueOf(expiresAt), stripe);
+    }
+
+    public void deleteHold(Long userId, Long productId) {
+        jdbcTemplate.queryForObject(DELETE_HOLD, Integer.class, userId, productId);
+    }
+
+    public void deleteHolds(Long userId) {
+        jdbcTemplate.queryForObject(DELETE_HOLDS, Integer.class, userId);
+    }
+
+    public void deleteExpired(List<Hold> holds, LocalDateTime now) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_EXPIRED_HOLDS);
+            ps.setArray(1, con.createArrayOf("bigint", holds.stream().map(Hold::userId).toArray()));
+            ps.setArray(2, con.createArrayOf("bigint", holds.stream().map(Hold::productId).toArray()));
+            ps.setTimestamp(3, Timestamp.valueOf(now));
+            return ps;
+        }, (rs, rowNum) -> rs.getInt(1));
+    }
+
+    public int deleteAllExpired(LocalDateTime now) {
+        return jdbcTemplate.queryForObject(DELETE_ALL_EXPIRED_HOLDS, Integer.class, Timestamp.valueOf(now));
+    }
+
+    /**
+     * Deletes the user's hold on the product without handing its units back, and returns it if it
+     * sat on a stripe, so the caller can pass those units on to a new hold.
+     */
+    public StripeHold takeHold(Long userId, Long productId) {
+        List<StripeHold> taken = jdbcTemplate.query(
+            "DELETE FROM stock_reservations WHERE user_id = ? AND product_id = ? RETURNING product_id, stripe, quantity",
+            STRIPE_HOLD_ROW, userId, productId);
+        return taken.isEmpty() ? null : taken.get(0);
+    }
+
+    /**
+     * Deletes all of the user's holds, and returns those on stripes by product id without handing
+     * their units back: checkout takes them from the stripe along with the order.
+     */
+    public Map<Long, StripeHold> takeHolds(Long userId) {
+        Map<Long, StripeHold> taken = new HashMap<>();
+        jdbcTemplate.query("DELETE FROM stock_reservations WHERE user_id = ? RETURNING product_id, stripe, quantity",
+            STRIPE_HOLD_ROW, userId).stream()
+            .filter(Objects::nonNull)
+            .forEach(hold -> taken.put(hold.productId(), hold));
+        return taken;
+    }
+
+    /**
+     * Deletes the expired holds on the product's stripes without handing their units back, for a
+     * caller that has locked the stripes and folds the units in itself.
+     */
+    public List<StripeHold> takeExpiredOnStripes(Long productId, LocalDateTime now) {
+        return jdbcTemplate.query(DELETE_EXPIRED_ON_STRIPES, STRIPE_HOLD_ROW, productId, Timestamp.valueOf(now));
+    }
+
+    /**
+     * Locks every hold of the product, for a restripe that is about to move them. Taken before
+     * the stripe locks, the same order reserve and checkout use.
+     */
+    public void lockHolds(Long productId) {
+        jdbcTemplate.queryForList("SELECT user_id FROM stock_reservations WHERE product_id = ? FOR UPDATE",
+            Long.class, productId);
+    }
+
+    /**
+     * Deletes the product's expired holds and spreads the rest over the given number of stripes
+     * by user id, or moves them back onto the product row for 0. Returns the units now held on
+     * each stripe.
+     */
+    public int[] moveHoldsToStripes(Long productId, int stripes, LocalDateTime now) {
+        jdbcTemplate.update("DELETE FROM stock_reservations WHERE product_id = ? AND expires_at <= ?",
+            productId, Timestamp.valueOf(now));
+        int[] held = new int[stripes];
+        if (stripes == 0) {
+            jdbcTemplate.update("UPDATE stock_reservations SET stripe = NULL WHERE product_id = ?", productId);
+            return held;
+        }
+        jdbcTemplate.query(ASSIGN_STRIPES, STRIPE_HOLD_ROW, stripes, productId)
+            .forEach(hold -> held[hold.stripe()] += hold.quantity());
+        return held;
+    }
+
+    /**
+     * Streams every hold that is still active. Must run inside a transaction for the driver to
+     * fetch in chunks instead of loading the whole table.
+     */
+    public void forEachActiveHold(LocalDateTime now, Consumer<Hold> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                "SELECT user_id, product_id, expires_at FROM stock_reservations WHERE expires_at > ?");
+            ps.setFetchSize(RECOVERY_FETCH_SIZE);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            return ps;
+        }, rs -> {
+            consumer.accept(new Hold(rs.getLong("user_id"), rs.getLong("product_id"),
+                rs.getObject("expires_at", LocalDateTime.class)));
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.portfolio.ecommerce.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aggregate over a set of versioned rows. Any insert, update or delete in the set changes at
+ * least one of the three values, so together they identify a version of the whole list.
+ */
+public interface VersionSummary {
+
+    Long getRowCount();
+
+    Long getVersionSum();
+
+    LocalDateTime getLastUpdated();
+}
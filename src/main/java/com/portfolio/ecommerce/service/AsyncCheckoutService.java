@@ -0,0 +1,250 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.dto.CheckoutStatusResponse;
+import com.portfolio.ecommerce.dto.OrderResponse;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.exception.InsufficientStockException;
+import com.portfolio.ecommerce.exception.ResourceNotFoundException;
+import com.portfolio.ecommerce.exception.ServiceBusyException;
+import com.portfolio.ecommerce.model.Cart;
+import com.portfolio.ecommerce.model.CheckoutRequest;
+import com.portfolio.ecommerce.repository.CartRepository;
+import com.portfolio.ecommerce.repository.CheckoutRequestJdbcRepository;
+import com.portfolio.ecommerce.repository.CheckoutRequestRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous checkout. Accepting a request is a cart read and one insert; a fixed pool of
+ * worker threads turns accepted requests into orders, taking them off a bounded in-memory queue
+ * in micro-batches. The pool size caps how many checkouts use the database at once, so a spike
+ * queues up instead of taking connections and request threads from the rest of the site.
+ *
+ * <p>checkout_requests is the durable copy of the queue. Requests the queue had no room for, and
+ * those of a node that stopped mid-checkout, are picked up from the table by a periodic poll.
+ */
+@Service
+@Slf4j
+public class AsyncCheckoutService {
+
+    static final int RETRY_AFTER_SECONDS = 1;
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final String GENERIC_ERROR = "Checkout could not be completed, please try again";
+
+    private final CheckoutRequestJdbcRepository checkoutRequestJdbcRepository;
+    private final CheckoutRequestRepository checkoutRequestRepository;
+    private final CartRepository cartRepository;
+    private final OrderService orderService;
+    private final TransactionTemplate transactionTemplate;
+    private final int workerCount;
+    private final int batchSize;
+    private final Duration staleAfter;
+    private final Duration pollInterval;
+    private final BlockingQueue<UUID> queue;
+    // Tokens sitting in this node's queue, so the poll does not queue them twice
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public AsyncCheckoutService(CheckoutRequestJdbcRepository checkoutRequestJdbcRepository,
+                                CheckoutRequestRepository checkoutRequestRepository,
+                                CartRepository cartRepository,
+                                OrderService orderService,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${checkout.async.workers:4}") int workerCount,
+                                @Value("${checkout.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${checkout.async.batch-size:20}") int batchSize,
+                                @Value("${checkout.async.stale-after:5m}") Duration staleAfter,
+                                @Value("${checkout.async.poll-interval-ms:5000}") long pollIntervalMs) {
+        this.checkoutRequestJdbcRepository = checkoutRequestJdbcRepository;
+        this.checkoutRequestRepository = checkoutRequestRepository;
+        this.cartRepository = cartRepository;
+        this.orderService = orderService;
+        this.transactionTemplate = transactionTemplate;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.staleAfter = staleAfter;
+        this.pollInterval = Duration.ofMillis(pollIntervalMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Accepts a checkout of the user's cart for the workers and returns its token. The cart is
+     * read again when the order is placed, so changes made in between are part of the order.
+     */
+    public CheckoutStatusResponse submit(Long userId) {
+        if (queue.remainingCapacity() == 0) {
+            throw new ServiceBusyException("Checkout is busy, please retry shortly", RETRY_AFTER_SECONDS);
+        }
+        int lines = cartRepository.findByUserId(userId).map(Cart::getItemCount).orElse(0);
+        if (lines == 0) {
+            throw new BadRequestException("Cannot create order from empty cart");
+        }
+
+        UUID token = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        // Committed before the token is queued, so a worker always finds the row
+        checkoutRequestJdbcRepository.insert(token, userId, now);
+        enqueue(token);
+        log.info("Checkout {} accepted for user id: {}", token, userId);
+        return CheckoutStatusResponse.builder()
+            .token(token)
+            .status(CheckoutRequest.Status.QUEUED)
+            .createdAt(now)
+            .updatedAt(now)
+            .build();
+    }
+
+    @Transactional(readOnly = true)
+    public CheckoutStatusResponse getStatus(UUID token, Long userId) {
+        CheckoutRequest request = checkoutRequestRepository.findByTokenAndUserId(token, userId)
+            .orElseThrow(() -> new ResourceNotFoundException("Checkout not found: " + token));
+        return CheckoutStatusResponse.builder()
+            .token(request.getToken())
+            .status(request.getStatus())
+            .orderId(request.getOrderId())
+            .error(request.getError())
+            .createdAt(request.getCreatedAt())
+            .updatedAt(request.getUpdatedAt())
+            .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        running = true;
+        workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("checkout-worker-"));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::runWorker);
+        }
+        log.info("Started {} checkout workers", workerCount);
+    }
+
+    @PreDestroy
+    public void stopWorkers() throws InterruptedException {
+        running = false;
+        if (workers == null) {
+            return;
+        }
+        // Workers finish the batch in hand; what is left in the queue is picked up from the table
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Checkout workers still busy at shutdown");
+        }
+    }
+
+    /**
+     * Hands the workers requests that are in the table but in no queue: those accepted while the
+     * queue was full, and those whose node stopped before finishing them.
+     */
+    @Scheduled(fixedDelayString = "${checkout.async.poll-interval-ms:5000}",
+               initialDelayString = "${checkout.async.poll-interval-ms:5000}")
+    public void pollWaitingRequests() {
+        LocalDateTime now = LocalDateTime.now();
+        int requeued = checkoutRequestJdbcRepository.requeueStale(now.minus(staleAfter), now);
+        if (requeued > 0) {
+            log.warn("Requeued {} checkouts abandoned mid-processing", requeued);
+        }
+        int room = queue.remainingCapacity();
+        if (room == 0) {
+            return;
+        }
+        // Requests accepted within the last interval are almost all in a queue already
+        checkoutRequestJdbcRepository.findWaiting(now.minus(pollInterval), room).forEach(this::enqueue);
+    }
+
+    /**
+     * Claims the batch, then places each claimed request's order in its own transaction, so one
+     * failing checkout does not roll back the others. A request's completion commits with its
+     * order, and only while the request is still PROCESSING, so a request requeued as stale never
+     * yields two orders.
+     */
+    void processBatch(List<UUID> tokens) {
+        for (CheckoutRequestJdbcRepository.Claimed request : checkoutRequestJdbcRepository.claim(tokens, LocalDateTime.now())) {
+            if (!checkoutRequestJdbcRepository.start(request.token(), LocalDateTime.now())) {
+                log.info("Checkout {} was requeued before it started", request.token());
+                continue;
+            }
+            try {
+                Long orderId = transactionTemplate.execute(status -> {
+                    OrderResponse order = orderService.createOrderFromCart(request.userId());
+                    if (!checkoutRequestJdbcRepository.complete(request.token(), order.getId(), LocalDateTime.now())) {
+                        status.setRollbackOnly();
+                        return null;
+                    }
+                    return order.getId();
+                });
+                if (orderId != null) {
+                    log.info("Checkout {} placed order {}", request.token(), orderId);
+                } else {
+                    log.warn("Checkout {} was settled by another worker, its order rolled back", request.token());
+                }
+            } catch (BadRequestException | InsufficientStockException | ResourceNotFoundException ex) {
+                checkoutRequestJdbcRepository.fail(request.token(), truncate(ex.getMessage()), LocalDateTime.now());
+                log.info("Checkout {} failed: {}", request.token(), ex.getMessage());
+            } catch (RuntimeException ex) {
+                // The message may carry SQL or other internals, so the shopper only sees a generic one
+                checkoutRequestJdbcRepository.fail(request.token(), GENERIC_ERROR, LocalDateTime.now());
+                log.error("Checkout {} failed", request.token(), ex);
+            }
+        }
+    }
+
+    private void enqueue(UUID token) {
+        if (queued.add(token) && !queue.offer(token)) {
+            // Stays QUEUED in the table for the poll to pick up
+            queued.remove(token);
+        }
+    }
+
+    private void runWorker() {
+        List<UUID> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                UUID first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                batch.forEach(queued::remove);
+                processBatch(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                // Claimed requests of the batch are requeued once they count as stale
+                log.error("Checkout batch of {} requests failed", batch.size(), ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
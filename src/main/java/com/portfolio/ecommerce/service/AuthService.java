@@ -2,10 +2,8 @@ package com.portfolio.ecommerce.service;
 
 import com.portfolio.ecommerce.dto.SignupRequest;
 import com.portfolio.ecommerce.exception.BadRequestException;
-import com.portfolio.ecommerce.model.Cart;
 import com.portfolio.ecommerce.model.Role;
 import com.portfolio.ecommerce.model.User;
-import com.portfolio.ecommerce.repository.CartRepository;
 import com.portfolio.ecommerce.repository.RoleRepository;
 import com.portfolio.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -24,7 +22,6 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final CartRepository cartRepository;
     private final PasswordEncoder passwordEncoder;
 
     @Transactional
@@ -60,16 +57,9 @@ public class AuthService {
         }
         user.setRoles(roles);
 
+        // The cart is created on the first add, see CartService
         User savedUser = userRepository.save(user);
 
-        // Create cart for user
-        if (!isAdmin) {
-            Cart cart = Cart.builder()
-                .user(savedUser)
-                .build();
-            cartRepository.save(cart);
-        }
-
         log.info("User registered successfully: {}", savedUser.getUsername());
         return savedUser;
     }
@@ -0,0 +1,98 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.repository.CartItemJdbcRepository;
+import com.portfolio.ecommerce.repository.JobLeaseJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Empties carts nobody touched for cart.expiry.ttl. Works in chunks of carts, each its own short
+ * transaction, and sleeps between chunks to stay under the configured delete rate. A lease in
+ * job_leases keeps other app nodes from sweeping at the same time.
+ */
+@Service
+@Slf4j
+public class CartExpirySweeper {
+
+    static final String LEASE_NAME = "cart-expiry-sweeper";
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(5);
+
+    private final CartItemJdbcRepository cartItemJdbcRepository;
+    private final JobLeaseJdbcRepository jobLeaseJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final int chunkSize;
+    private final int maxRowsPerSecond;
+    private final String owner = JobLeaseJdbcRepository.newOwner();
+
+    public CartExpirySweeper(CartItemJdbcRepository cartItemJdbcRepository,
+                             JobLeaseJdbcRepository jobLeaseJdbcRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${cart.expiry.ttl:30d}") Duration ttl,
+                             @Value("${cart.expiry.chunk-size:200}") int chunkSize,
+                             @Value("${cart.expiry.max-rows-per-second:2000}") int maxRowsPerSecond) {
+        this.cartItemJdbcRepository = cartItemJdbcRepository;
+        this.jobLeaseJdbcRepository = jobLeaseJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.chunkSize = chunkSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.expiry.sweep-interval-ms:900000}",
+               initialDelayString = "${cart.expiry.sweep-interval-ms:900000}")
+    public void sweep() {
+        if (!jobLeaseJdbcRepository.tryAcquire(LEASE_NAME, owner, LEASE_DURATION)) {
+            log.debug("Cart expiry sweep skipped, another node holds the lease");
+            return;
+        }
+
+        long carts = 0;
+        long lines = 0;
+        try {
+            LocalDateTime idleSince = LocalDateTime.now().minus(ttl);
+            while (!Thread.currentThread().isInterrupted()) {
+                long started = System.nanoTime();
+                CartItemJdbcRepository.ExpiredChunk chunk = transactionTemplate.execute(
+                    status -> cartItemJdbcRepository.expireIdleCarts(idleSince, chunkSize));
+                carts += chunk.carts();
+                lines += chunk.lines();
+                if (chunk.carts() < chunkSize) {
+                    break;
+                }
+                throttle(chunk.lines(), started);
+                // Extends the lease for the next chunk, and stops if it expired and was taken over
+                if (!jobLeaseJdbcRepository.tryAcquire(LEASE_NAME, owner, LEASE_DURATION)) {
+                    log.warn("Cart expiry sweep lost its lease, stopping");
+                    break;
+                }
+            }
+        } finally {
+            jobLeaseJdbcRepository.release(LEASE_NAME, owner);
+        }
+
+        if (carts > 0) {
+            log.info("Cart expiry sweep emptied {} idle carts, deleting {} lines", carts, lines);
+        }
+    }
+
+    private void throttle(int rows, long startedNanos) {
+        long budgetNanos = TimeUnit.SECONDS.toNanos(rows) / maxRowsPerSecond;
+        long sleepNanos = budgetNanos - (System.nanoTime() - startedNanos);
+        if (sleepNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
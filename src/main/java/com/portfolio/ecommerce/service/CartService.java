@@ -2,21 +2,32 @@ package com.portfolio.ecommerce.service;
 
 import com.portfolio.ecommerce.dto.CartItemRequest;
 import com.portfolio.ecommerce.dto.CartItemResponse;
+import com.portfolio.ecommerce.dto.CartPatchRequest;
 import com.portfolio.ecommerce.dto.CartResponse;
+import com.portfolio.ecommerce.dto.ProductLookupResponse;
+import com.portfolio.ecommerce.dto.ProductResponse;
 import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.Cart;
 import com.portfolio.ecommerce.model.CartItem;
-import com.portfolio.ecommerce.model.Product;
+import com.portfolio.ecommerce.repository.CartItemJdbcRepository;
+import com.portfolio.ecommerce.repository.CartItemRemovalRepository;
 import com.portfolio.ecommerce.repository.CartItemRepository;
 import com.portfolio.ecommerce.repository.CartRepository;
-import com.portfolio.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,22 +37,57 @@ public class CartService {
 
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
+    private final CartItemJdbcRepository cartItemJdbcRepository;
+    private final CartItemRemovalRepository cartItemRemovalRepository;
+    private final ProductService productService;
+    private final StockReservationService stockReservationService;
 
     @Transactional(readOnly = true)
     public CartResponse getCartByUserId(Long userId) {
-        Cart cart = cartRepository.findByUserIdWithItems(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
-        return mapToResponse(cart);
+        return cartRepository.findByUserIdWithItems(userId)
+            .map(this::mapToResponse)
+            .orElseGet(() -> emptyCart(userId));
     }
 
-    @Transactional
-    public CartResponse addItemToCart(Long userId, CartItemRequest request) {
-        Cart cart = cartRepository.findByUserIdWithItems(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
+    @Transactional(readOnly = true)
+    public ResourceVersion getCartVersion(Long userId) {
+        CartRepository.CartVersionView cart = cartRepository.findVersionByUserId(userId).orElse(null);
+        if (cart == null) {
+            return ResourceVersion.of("cart-user", userId, 0L, null);
+        }
+        // Lines show product names and images, so product edits have to change the tag as well
+        return ResourceVersion.of("cart", cart.getId(), cart.getVersion(), cart.getUpdatedAt())
+            .dependingOn(cart.getProductsUpdatedAt());
+    }
+
+    /**
+     * Lines changed and removed after the given version, with the current totals. A version from
+     * before the last clear, or one this cart never had, gets the whole cart instead.
+     */
+    @Transactional(readOnly = true)
+    public CartResponse getCartChanges(Long userId, Long sinceVersion) {
+        Cart cart = cartRepository.findByUserId(userId).orElse(null);
+        if (cart == null) {
+            return emptyCart(userId);
+        }
+        if (sinceVersion.equals(cart.getVersion())) {
+            return mapToDelta(cart, List.of(), List.of());
+        }
+        if (sinceVersion < cart.getClearedVersion() || sinceVersion > cart.getVersion()) {
+            return mapToResponse(cart);
+        }
+        List<CartItemResponse> changed = cartItemRepository
+            .findByCartIdAndCartVersionGreaterThan(cart.getId(), sinceVersion).stream()
+            .map(this::mapItemToResponse)
+            .collect(Collectors.toList());
+        return mapToDelta(cart, changed, cartItemRemovalRepository.findItemIdsRemovedSince(cart.getId(), sinceVersion));
+    }
 
-        Product product = productRepository.findById(request.getProductId())
-            .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + request.getProductId()));
+    @Transactional
+    public CartResponse addItemToCart(Long userId, CartItemRequest request, boolean delta) {
+        // Validate against the cached read model, which the upsert also uses to bound the merged
+        // quantity; reserve below is what checks it against the product row
+        ProductResponse product = productService.getProductById(request.getProductId());
 
         if (!product.getActive()) {
             throw new BadRequestException("Product is not available");
@@ -51,42 +97,39 @@ public class CartService {
             throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
         }
 
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), product.getId());
-        
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            int newQuantity = item.getQuantity() + request.getQuantity();
-            
-            if (product.getStockQuantity() < newQuantity) {
-                throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
-            }
-            
-            item.setQuantity(newQuantity);
-            item.calculateSubtotal();
-            cartItemRepository.save(item);
-        } else {
-            CartItem cartItem = CartItem.builder()
-                .cart(cart)
-                .product(product)
-                .quantity(request.getQuantity())
-                .price(product.getPrice())
-                .build();
-            cartItem.calculateSubtotal();
-            cart.addItem(cartItem);
-            cartItemRepository.save(cartItem);
+        // Adds the line or bumps its quantity and moves the cart total in one statement, so
+        // concurrent adds of the same product merge instead of creating duplicate lines
+        Optional<CartItemJdbcRepository.UpsertedLine> line = cartItemJdbcRepository.upsertLine(userId,
+            product.getId(), request.getQuantity(), product.getPrice(), product.getStockQuantity());
+        if (line.isEmpty() && !cartRepository.existsByUserId(userId)) {
+            // Carts are created on first use rather than at registration
+            cartItemJdbcRepository.insertCartIfMissing(userId);
+            line = cartItemJdbcRepository.upsertLine(userId,
+                product.getId(), request.getQuantity(), product.getPrice(), product.getStockQuantity());
         }
-
-        cart.calculateTotalPrice();
-        cartRepository.save(cart);
+        if (line.isEmpty()) {
+            throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
+        }
+        // Holds the line's whole quantity, which also checks it against other shoppers' holds
+        stockReservationService.reserve(userId, product.getId(), line.get().quantity(), false);
 
         log.info("Item added to cart for user id: {}", userId);
+        if (delta) {
+            Cart cart = cartRepository.findByUserId(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
+            Long itemId = line.get().itemId();
+            CartItem item = cartItemRepository.findById(itemId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with id: " + itemId));
+            return mapToDelta(cart, List.of(mapItemToResponse(item)), List.of());
+        }
+        Cart cart = cartRepository.findByUserIdWithItems(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
         return mapToResponse(cart);
     }
 
     @Transactional
-    public CartResponse updateCartItem(Long userId, Long cartItemId, Integer quantity) {
-        Cart cart = cartRepository.findByUserIdWithItems(userId)
+    public CartResponse updateCartItem(Long userId, Long cartItemId, Integer quantity, boolean delta) {
+        Cart cart = cartRepository.findByUserId(userId)
             .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
 
         CartItem cartItem = cartItemRepository.findById(cartItemId)
@@ -96,25 +139,29 @@ public class CartService {
             throw new BadRequestException("Cart item does not belong to this user's cart");
         }
 
-        Product product = cartItem.getProduct();
+        ProductResponse product = productService.getProductById(cartItem.getProduct().getId());
         if (product.getStockQuantity() < quantity) {
             throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
         }
 
+        BigDecimal previousSubtotal = cartItem.getSubtotal();
         cartItem.setQuantity(quantity);
         cartItem.calculateSubtotal();
+        cartItem.setCartVersion(cart.getVersion() + 1);
         cartItemRepository.save(cartItem);
 
-        cart.calculateTotalPrice();
-        cartRepository.save(cart);
+        cart.applyLineDelta(0, cartItem.getSubtotal().subtract(previousSubtotal));
+        saveCart(cart);
+        // After the cart write, so the cart row is always locked before the product row
+        stockReservationService.reserve(userId, product.getId(), quantity, false);
 
         log.info("Cart item updated for user id: {}", userId);
-        return mapToResponse(cart);
+        return delta ? mapToDelta(cart, List.of(mapItemToResponse(cartItem)), List.of()) : mapToResponse(cart);
     }
 
     @Transactional
-    public CartResponse removeItemFromCart(Long userId, Long cartItemId) {
-        Cart cart = cartRepository.findByUserIdWithItems(userId)
+    public CartResponse removeItemFromCart(Long userId, Long cartItemId, boolean delta) {
+        Cart cart = cartRepository.findByUserId(userId)
             .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
 
         CartItem cartItem = cartItemRepository.findById(cartItemId)
@@ -124,47 +171,329 @@ public class CartService {
             throw new BadRequestException("Cart item does not belong to this user's cart");
         }
 
-        cart.removeItem(cartItem);
         cartItemRepository.delete(cartItem);
+        cartItemJdbcRepository.recordRemovals(cart.getId(), cart.getVersion() + 1, List.of(cartItemId));
 
-        cart.calculateTotalPrice();
-        cartRepository.save(cart);
+        cart.applyLineDelta(-1, cartItem.getSubtotal().negate());
+        saveCart(cart);
+        stockReservationService.release(userId, cartItem.getProduct().getId());
 
         log.info("Item removed from cart for user id: {}", userId);
-        return mapToResponse(cart);
+        return delta ? mapToDelta(cart, List.of(), List.of(cartItemId)) : mapToResponse(cart);
     }
 
     @Transactional
     public void clearCart(Long userId) {
-        Cart cart = cartRepository.findByUserIdWithItems(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
+        Cart cart = cartRepository.findByUserId(userId).orElse(null);
+        if (cart == null) {
+            return;
+        }
 
-        cart.getItems().clear();
-        cart.calculateTotalPrice();
         cartItemRepository.deleteByCartId(cart.getId());
-        cartRepository.save(cart);
+        // Tombstones are only needed for deltas from after the clear, so older ones can go
+        cartItemRemovalRepository.deleteByCartId(cart.getId());
+        cart.setTotalPrice(BigDecimal.ZERO);
+        cart.setItemCount(0);
+        cart.setClearedVersion(cart.getVersion() + 1);
+        saveCart(cart);
+        stockReservationService.releaseAll(userId);
 
         log.info("Cart cleared for user id: {}", userId);
     }
 
+    /**
+     * Applies a list of line changes in one transaction. Operations are folded per product in
+     * request order first, so the stock check sees the final quantity of every line and all
+     * products are checked with one lookup before anything is written.
+     */
+    @Transactional
+    public CartResponse patchCart(Long userId, CartPatchRequest request, boolean delta) {
+        return applyOperations(userId, request.getOperations(), false, delta);
+    }
+
+    /**
+     * Adds a guest cart's lines to the user's cart in one batch when they sign in. Lines that can
+     * no longer be satisfied are trimmed to the stock left or dropped rather than failing.
+     */
+    @Transactional
+    public CartResponse mergeGuestCart(Long userId, Map<Long, Integer> guestLines) {
+        List<CartPatchRequest.Operation> operations = guestLines.entrySet().stream()
+            .map(line -> new CartPatchRequest.Operation(CartPatchRequest.OperationType.ADD, line.getKey(), line.getValue()))
+            .collect(Collectors.toList());
+        return applyOperations(userId, operations, true, false);
+    }
+
+    private CartResponse applyOperations(Long userId, List<CartPatchRequest.Operation> operations,
+                                         boolean trimToStock, boolean delta) {
+        Cart cart = cartRepository.findByUserIdWithItems(userId)
+            .orElseGet(() -> createCart(userId));
+
+        Map<Long, CartItem> lines = new HashMap<>();
+        cart.getItems().forEach(item -> lines.put(item.getProduct().getId(), item));
+
+        // Final quantity per touched product; 0 means the line goes
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            CartPatchRequest.Operation operation = operations.get(i);
+            Long productId = operation.getProductId();
+            CartItem line = lines.get(productId);
+            int current = quantities.getOrDefault(productId, line != null ? line.getQuantity() : 0);
+            quantities.put(productId, switch (operation.getOp()) {
+                case ADD -> current + requireQuantity(operation, i, 1);
+                case SET_QUANTITY -> requireQuantity(operation, i, 0);
+                case REMOVE -> 0;
+            });
+        }
+
+        List<Long> kept = quantities.entrySet().stream()
+            .filter(change -> change.getValue() > 0)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        Map<Long, ProductResponse> products = new HashMap<>();
+        if (!kept.isEmpty()) {
+            for (ProductLookupResponse lookup : productService.getProductsByIds(kept)) {
+                if (lookup.getFound()) {
+                    products.put(lookup.getId(), lookup.getProduct());
+                }
+            }
+        }
+        Map<Long, Integer> available = trimToStock && !kept.isEmpty()
+            ? stockReservationService.availableToSell(userId, kept)
+            : Map.of();
+        for (Long productId : kept) {
+            ProductResponse product = products.get(productId);
+            if (trimToStock) {
+                CartItem line = lines.get(productId);
+                int current = line != null ? line.getQuantity() : 0;
+                boolean sellable = product != null && (line != null || product.getActive());
+                quantities.put(productId, sellable
+                    ? Math.max(current, Math.min(quantities.get(productId), available.getOrDefault(productId, 0)))
+                    : current);
+                continue;
+            }
+            if (product == null) {
+                throw new ResourceNotFoundException("Product not found with id: " + productId);
+            }
+            if (!lines.containsKey(productId) && !product.getActive()) {
+                throw new BadRequestException("Product is not available: " + productId);
+            }
+            if (product.getStockQuantity() < quantities.get(productId)) {
+                throw new BadRequestException("Insufficient stock for product id " + productId
+                    + ". Available: " + product.getStockQuantity());
+            }
+        }
+
+        long nextVersion = cart.getVersion() + 1;
+        List<CartItemJdbcRepository.NewLine> newLines = new ArrayList<>();
+        List<CartItem> changedLines = new ArrayList<>();
+        List<Long> removedIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> change : quantities.entrySet()) {
+            CartItem line = lines.get(change.getKey());
+            int quantity = change.getValue();
+            if (line == null) {
+                if (quantity > 0) {
+                    BigDecimal price = products.get(change.getKey()).getPrice();
+                    newLines.add(new CartItemJdbcRepository.NewLine(change.getKey(), quantity, price));
+                    cart.applyLineDelta(1, price.multiply(BigDecimal.valueOf(quantity)));
+                }
+            } else if (quantity == 0) {
+                // Orphan removal deletes the line when the cart is flushed
+                cart.getItems().remove(line);
+                cart.applyLineDelta(-1, line.getSubtotal().negate());
+                removedIds.add(line.getId());
+            } else if (quantity != line.getQuantity()) {
+                BigDecimal previousSubtotal = line.getSubtotal();
+                line.setQuantity(quantity);
+                line.calculateSubtotal();
+                line.setCartVersion(nextVersion);
+                cart.applyLineDelta(0, line.getSubtotal().subtract(previousSubtotal));
+                changedLines.add(line);
+            }
+        }
+        // Updates and deletes go out as JDBC batches; new lines are one multi-row insert
+        saveCart(cart);
+        if (!removedIds.isEmpty()) {
+            cartItemJdbcRepository.recordRemovals(cart.getId(), nextVersion, removedIds);
+        }
+
+        List<CartItemResponse> items = (delta ? changedLines : cart.getItems()).stream()
+            .map(this::mapItemToResponse)
+            .collect(Collectors.toList());
+        if (!newLines.isEmpty()) {
+            Map<Long, Long> lineIds = cartItemJdbcRepository.insertLines(cart.getId(), nextVersion, newLines);
+            for (CartItemJdbcRepository.NewLine line : newLines) {
+                ProductResponse product = products.get(line.productId());
+                items.add(CartItemResponse.builder()
+                    .id(lineIds.get(line.productId()))
+                    .productId(product.getId())
+                    .productName(product.getName())
+                    .productImageUrl(product.getImageUrl())
+                    .price(line.price())
+                    .quantity(line.quantity())
+                    .subtotal(line.price().multiply(BigDecimal.valueOf(line.quantity())))
+                    .build());
+            }
+        }
+
+        // Holds go last and in product id order, so the cart row is always locked before product rows
+        for (Map.Entry<Long, Integer> change : new TreeMap<>(quantities).entrySet()) {
+            if (change.getValue() > 0) {
+                stockReservationService.reserve(userId, change.getKey(), change.getValue(), trimToStock);
+            } else {
+                stockReservationService.release(userId, change.getKey());
+            }
+        }
+
+        log.info("Cart patched with {} operations for user id: {}", operations.size(), userId);
+        return delta ? mapToDelta(cart, items, removedIds) : mapToResponse(cart, items);
+    }
+
+    /**
+     * Prices a guest cart read from its cookie. Products that were deleted or deactivated since
+     * they were added are left out. Product data comes from the product cache, so a warm cache
+     * answers without touching the database.
+     */
+    public CartResponse getGuestCart(Map<Long, Integer> lines) {
+        if (lines.isEmpty()) {
+            return emptyCart(null);
+        }
+        Map<Long, ProductResponse> products = new HashMap<>();
+        for (ProductLookupResponse lookup : productService.getProductsByIds(new ArrayList<>(lines.keySet()))) {
+            if (lookup.getFound()) {
+                products.put(lookup.getId(), lookup.getProduct());
+            }
+        }
+
+        List<CartItemResponse> items = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            ProductResponse product = products.get(line.getKey());
+            if (product == null || !product.getActive()) {
+                continue;
+            }
+            BigDecimal subtotal = product.getPrice().multiply(BigDecimal.valueOf(line.getValue()));
+            items.add(CartItemResponse.builder()
+                .productId(product.getId())
+                .productName(product.getName())
+                .productImageUrl(product.getImageUrl())
+                .price(product.getPrice())
+                .quantity(line.getValue())
+                .subtotal(subtotal)
+                .build());
+            total = total.add(subtotal);
+        }
+        return CartResponse.builder()
+            .items(items)
+            .totalPrice(total)
+            .totalItems(items.size())
+            .delta(false)
+            .build();
+    }
+
+    public Map<Long, Integer> addItemToGuestCart(Map<Long, Integer> lines, CartItemRequest request) {
+        ProductResponse product = productService.getProductById(request.getProductId());
+        if (!product.getActive()) {
+            throw new BadRequestException("Product is not available");
+        }
+        int quantity = lines.getOrDefault(product.getId(), 0) + request.getQuantity();
+        if (product.getStockQuantity() < quantity) {
+            throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
+        }
+        Map<Long, Integer> updated = new LinkedHashMap<>(lines);
+        updated.put(product.getId(), quantity);
+        return updated;
+    }
+
+    /**
+     * Sets a guest cart line's quantity; zero removes the line.
+     */
+    public Map<Long, Integer> updateGuestCartItem(Map<Long, Integer> lines, Long productId, int quantity) {
+        if (!lines.containsKey(productId)) {
+            throw new ResourceNotFoundException("Product " + productId + " is not in the guest cart");
+        }
+        Map<Long, Integer> updated = new LinkedHashMap<>(lines);
+        if (quantity <= 0) {
+            updated.remove(productId);
+            return updated;
+        }
+        ProductResponse product = productService.getProductById(productId);
+        if (product.getStockQuantity() < quantity) {
+            throw new BadRequestException("Insufficient stock. Available: " + product.getStockQuantity());
+        }
+        updated.put(productId, quantity);
+        return updated;
+    }
+
+    private Cart createCart(Long userId) {
+        cartItemJdbcRepository.insertCartIfMissing(userId);
+        return cartRepository.findByUserIdWithItems(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user id: " + userId));
+    }
+
+    private void saveCart(Cart cart) {
+        // A line change does not always dirty the cart row itself; touching it makes every
+        // mutation bump the version the cart ETag is built from
+        cart.setUpdatedAt(LocalDateTime.now());
+        // Flushed so a removed line is gone before the response lazily loads the remaining ones
+        cartRepository.saveAndFlush(cart);
+    }
+
+    private static int requireQuantity(CartPatchRequest.Operation operation, int index, int min) {
+        if (operation.getQuantity() == null || operation.getQuantity() < min) {
+            throw new BadRequestException("Operation " + index + ": quantity must be at least " + min);
+        }
+        return operation.getQuantity();
+    }
+
     private CartResponse mapToResponse(Cart cart) {
+        return mapToResponse(cart, cart.getItems().stream()
+            .map(this::mapItemToResponse)
+            .collect(Collectors.toList()));
+    }
+
+    private CartResponse mapToResponse(Cart cart, List<CartItemResponse> items) {
+        return CartResponse.builder()
+            .id(cart.getId())
+            .userId(cart.getUser().getId())
+            .items(items)
+            .totalPrice(cart.getTotalPrice())
+            .totalItems(cart.getItemCount())
+            .version(cart.getVersion())
+            .delta(false)
+            .build();
+    }
+
+    private CartResponse emptyCart(Long userId) {
+        return CartResponse.builder()
+            .userId(userId)
+            .items(List.of())
+            .totalPrice(BigDecimal.ZERO)
+            .totalItems(0)
+            .version(0L)
+            .delta(false)
+            .build();
+    }
+
+    private CartResponse mapToDelta(Cart cart, List<CartItemResponse> changed, List<Long> removedItemIds) {
         return CartResponse.builder()
             .id(cart.getId())
             .userId(cart.getUser().getId())
-            .items(cart.getItems().stream()
-                .map(this::mapItemToResponse)
-                .collect(Collectors.toList()))
+            .items(changed)
             .totalPrice(cart.getTotalPrice())
-            .totalItems(cart.getItems().size())
+            .totalItems(cart.getItemCount())
+            .version(cart.getVersion())
+            .delta(true)
+            .removedItemIds(removedItemIds)
             .build();
     }
 
     private CartItemResponse mapItemToResponse(CartItem item) {
+        ProductResponse product = productService.getProductById(item.getProduct().getId());
         return CartItemResponse.builder()
             .id(item.getId())
-            .productId(item.getProduct().getId())
-            .productName(item.getProduct().getName())
-            .productImageUrl(item.getProduct().getImageUrl())
+            .productId(product.getId())
+            .productName(product.getName())
+            .productImageUrl(product.getImageUrl())
             .price(item.getPrice())
             .quantity(item.getQuantity())
             .subtotal(item.getSubtotal())
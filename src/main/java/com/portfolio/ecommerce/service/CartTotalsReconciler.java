@@ -0,0 +1,56 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.repository.CartItemJdbcRepository;
+import com.portfolio.ecommerce.repository.JobLeaseJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Safety net for the cart running totals: recomputes them from cart_items for carts that drifted.
+ * The run is a full scan of cart_items, so it happens at most once per interval across all app
+ * nodes: the node that runs it keeps the job_leases row for the whole interval, and nodes that
+ * start or tick in the meantime skip.
+ */
+@Service
+@Slf4j
+public class CartTotalsReconciler {
+
+    static final String LEASE_NAME = "cart-totals-reconciler";
+    // Carts written this recently are left alone by the reconcile run; see CartItemJdbcRepository
+    private static final Duration RECONCILE_GRACE = Duration.ofMinutes(1);
+
+    private final CartItemJdbcRepository cartItemJdbcRepository;
+    private final JobLeaseJdbcRepository jobLeaseJdbcRepository;
+    private final Duration interval;
+    private final String owner = JobLeaseJdbcRepository.newOwner();
+
+    public CartTotalsReconciler(CartItemJdbcRepository cartItemJdbcRepository,
+                                JobLeaseJdbcRepository jobLeaseJdbcRepository,
+                                @Value("${cart.reconcile-interval-ms:3600000}") long intervalMs) {
+        this.cartItemJdbcRepository = cartItemJdbcRepository;
+        this.jobLeaseJdbcRepository = jobLeaseJdbcRepository;
+        this.interval = Duration.ofMillis(intervalMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${cart.reconcile-interval-ms:3600000}",
+               initialDelayString = "${cart.reconcile-interval-ms:3600000}")
+    public void reconcileTotals() {
+        // Not released afterwards: the lease running out is what lets the next run happen
+        if (!jobLeaseJdbcRepository.tryAcquire(LEASE_NAME, owner, interval)) {
+            log.debug("Cart totals reconcile skipped, it ran within the last interval");
+            return;
+        }
+        int repaired = cartItemJdbcRepository.reconcileTotals(LocalDateTime.now().minus(RECONCILE_GRACE));
+        if (repaired > 0) {
+            log.warn("Repaired running totals of {} carts", repaired);
+        }
+    }
+}
@@ -2,12 +2,17 @@ package com.portfolio.ecommerce.service;
 
 import com.portfolio.ecommerce.dto.CategoryRequest;
 import com.portfolio.ecommerce.dto.CategoryResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
 import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.Category;
 import com.portfolio.ecommerce.repository.CategoryRepository;
+import com.portfolio.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +25,19 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Realigns the denormalized product counts with the products table, which covers rows written
+     * outside the application and databases where the column was only just added.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recountProducts() {
+        int updated = categoryRepository.recountProducts();
+        log.info("Corrected the product count of {} categories", updated);
+    }
 
     @Transactional(readOnly = true)
     public List<CategoryResponse> getAllCategories() {
@@ -35,6 +53,13 @@ public class CategoryService {
             .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public ResourceVersion getCategoriesVersion(boolean activeOnly) {
+        // Product writes bump the version of the categories whose product count they change, so
+        // the categories table alone covers every change to the list
+        return ResourceVersion.of("categories", categoryRepository.summarizeVersions(activeOnly));
+    }
+
     @Transactional(readOnly = true)
     public CategoryResponse getCategoryById(Long id) {
         Category category = categoryRepository.findById(id)
@@ -56,6 +81,7 @@ public class CategoryService {
 
         Category savedCategory = categoryRepository.save(category);
         log.info("Category created successfully: {}", savedCategory.getName());
+        eventPublisher.publishEvent(CategoryChangedEvent.upserted(savedCategory.getId(), savedCategory.getName()));
         return mapToResponse(savedCategory);
     }
 
@@ -74,6 +100,7 @@ public class CategoryService {
 
         Category updatedCategory = categoryRepository.save(category);
         log.info("Category updated successfully: {}", updatedCategory.getName());
+        eventPublisher.publishEvent(CategoryChangedEvent.upserted(updatedCategory.getId(), updatedCategory.getName()));
         return mapToResponse(updatedCategory);
     }
 
@@ -82,12 +109,13 @@ public class CategoryService {
         Category category = categoryRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + id));
         
-        if (!category.getProducts().isEmpty()) {
+        if (productRepository.existsByCategoryId(id)) {
             throw new BadRequestException("Cannot delete category with existing products");
         }
 
         categoryRepository.delete(category);
         log.info("Category deleted successfully with id: {}", id);
+        eventPublisher.publishEvent(CategoryChangedEvent.deleted(id));
     }
 
     private CategoryResponse mapToResponse(Category category) {
@@ -96,7 +124,7 @@ public class CategoryService {
             .name(category.getName())
             .description(category.getDescription())
             .active(category.getActive())
-            .productCount(category.getProducts().size())
+            .productCount(category.getProductCount() != null ? category.getProductCount() : 0)
             .createdAt(category.getCreatedAt())
             .updatedAt(category.getUpdatedAt())
             .build();
@@ -0,0 +1,120 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.exception.BadRequestException;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Encodes an anonymous shopper's cart into a signed cookie, so guest carts cost no database
+ * rows. The value is the product id and quantity pairs, base64url encoded, followed by a
+ * truncated HMAC-SHA256 over them. A missing, oversized or tampered cookie reads as an empty cart.
+ */
+@Component
+public class GuestCartCodec {
+
+    public static final String COOKIE_NAME = "guest_cart";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final int MAX_QUANTITY = 999;
+    private static final int MAX_COOKIE_LENGTH = 3072;
+
+    private final SecretKeySpec key;
+    @Getter
+    private final int maxLines;
+    private final Duration maxAge;
+
+    public GuestCartCodec(@Value("${cart.guest.secret:${jwt.secret}}") String secret,
+                          @Value("${cart.guest.max-lines:50}") int maxLines,
+                          @Value("${cart.guest.max-age:30d}") Duration maxAge) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.maxLines = maxLines;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Product id to quantity, in the order the products were first added.
+     */
+    public Map<Long, Integer> decode(String token) {
+        if (token == null || token.isEmpty() || token.length() > MAX_COOKIE_LENGTH) {
+            return new LinkedHashMap<>();
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return new LinkedHashMap<>();
+            }
+            Map<Long, Integer> lines = new LinkedHashMap<>();
+            String text = new String(payload, StandardCharsets.UTF_8);
+            for (String entry : text.isEmpty() ? new String[0] : text.split(",")) {
+                int colon = entry.indexOf(':');
+                int quantity = Integer.parseInt(entry.substring(colon + 1));
+                if (quantity > 0 && lines.size() < maxLines) {
+                    lines.put(Long.parseLong(entry.substring(0, colon)), Math.min(quantity, MAX_QUANTITY));
+                }
+            }
+            return lines;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            return new LinkedHashMap<>();
+        }
+    }
+
+    public String encode(Map<Long, Integer> lines) {
+        if (lines.size() > maxLines) {
+            throw new BadRequestException("A guest cart holds at most " + maxLines + " products; sign in to add more");
+        }
+        StringJoiner text = new StringJoiner(",");
+        lines.forEach((productId, quantity) -> text.add(productId + ":" + Math.min(quantity, MAX_QUANTITY)));
+        byte[] payload = text.toString().getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    public ResponseCookie cookie(Map<Long, Integer> lines) {
+        if (lines.isEmpty()) {
+            return expiredCookie();
+        }
+        return baseCookie(encode(lines)).maxAge(maxAge).build();
+    }
+
+    public ResponseCookie expiredCookie() {
+        return baseCookie("").maxAge(0).build();
+    }
+
+    private ResponseCookie.ResponseCookieBuilder baseCookie(String value) {
+        // Sent to the cart endpoints and to login, which merges it into the account's cart
+        return ResponseCookie.from(COOKIE_NAME, value)
+            .path("/api")
+            .httpOnly(true)
+            .sameSite("Lax");
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Arrays.copyOf(mac.doFinal(payload), SIGNATURE_BYTES);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Guest cart signing is unavailable", ex);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.exception.InsufficientStockException;
+import com.portfolio.ecommerce.exception.ResourceNotFoundException;
+import com.portfolio.ecommerce.repository.ProductJdbcRepository;
+import com.portfolio.ecommerce.repository.ProductStockStripeJdbcRepository;
+import com.portfolio.ecommerce.repository.ProductStockStripeJdbcRepository.Stripes;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository.StripeHold;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryService {
+
+    static final int MAX_STOCK_STRIPES = 64;
+
+    private final ProductJdbcRepository productJdbcRepository;
+    private final ProductStockStripeJdbcRepository productStockStripeJdbcRepository;
+    private final StockReservationJdbcRepository stockReservationJdbcRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Takes the given quantities out of stock with conditional updates, so two checkouts can never
+     * both take the last unit. Rows are updated in ascending product id order, which keeps
+     * concurrent checkouts from deadlocking on each other's row locks. Stock that other shoppers
+     * hold for their carts is not taken. The buyer's own holds on stripes, already deleted by the
+     * caller, are taken from the stripes they sit on. If any product is short, every shortage is
+     * reported and the caller's transaction rolls back.
+     */
+    @Transactional
+    public void decrementStock(Map<Long, Integer> quantities, Long userId, Map<Long, StripeHold> stripeHolds) {
+        if (quantities.isEmpty()) {
+            releaseStripeHolds(stripeHolds.values());
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        TreeMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        Map<Long, Integer> stripeCounts = productStockStripeJdbcRepository.findStripeCounts(ordered.keySet());
+
+        TreeMap<Long, Integer> unstriped = new TreeMap<>(ordered);
+        unstriped.keySet().removeAll(stripeCounts.keySet());
+        List<Long> shortIds = new ArrayList<>(unstriped.isEmpty()
+            ? List.of()
+            : productJdbcRepository.decrementStock(unstriped, userId, now));
+
+        // Striped products come after the product rows, still in id order, so every checkout
+        // takes its locks in the same sequence
+        Map<Long, Integer> stripedAvailable = new HashMap<>();
+        for (Map.Entry<Long, Integer> line : ordered.entrySet()) {
+            Integer stripes = stripeCounts.get(line.getKey());
+            if (stripes != null) {
+                int available = takeFromStripes(line.getKey(), stripes, line.getValue(),
+                    stripeHolds.get(line.getKey()), now);
+                if (available >= 0) {
+                    stripedAvailable.put(line.getKey(), available);
+                    shortIds.add(line.getKey());
+                }
+            }
+        }
+        // Holds are kept in step with cart lines, but should one outlive its line, its units go
+        // back to sale rather than staying held for good
+        releaseStripeHolds(stripeHolds.values().stream()
+            .filter(hold -> !ordered.containsKey(hold.productId()))
+            .toList());
+
+        Map<Long, ProductResponse> products = productJdbcRepository.findByIds(ordered.keySet()).stream()
+            .collect(Collectors.toMap(ProductResponse::getId, Function.identity()));
+
+        if (!shortIds.isEmpty()) {
+            // What this shopper could have bought, so stock held by others does not show as available
+            Map<Long, Integer> available =
+                new HashMap<>(stockReservationJdbcRepository.findAvailable(userId, shortIds, now));
+            available.putAll(stripedAvailable);
+            List<InsufficientStockException.Shortage> shortages = new ArrayList<>();
+            for (Long productId : shortIds) {
+                ProductResponse product = products.get(productId);
+                shortages.add(new InsufficientStockException.Shortage(productId,
+                    product != null ? product.getSku() : null, ordered.get(productId),
+                    Math.max(available.getOrDefault(productId, 0), 0)));
+            }
+            log.info("Checkout rejected, insufficient stock for products {}", shortIds);
+            throw new InsufficientStockException(shortages);
+        }
+
+        // The product cache and the facet snapshot pick up the new stock after commit. Striped
+        // products are left to the roll-up, which batches their changes.
+        products.values().stream()
+            .filter(product -> !stripeCounts.containsKey(product.getId()))
+            .forEach(product -> eventPublisher.publishEvent(ProductChangedEvent.stockChanged(product)));
+    }
+
+    /**
+     * Switches a product between one stock counter on its row and the given number of stripes,
+     * carrying the current stock over. Holds move along: spread over the stripes by user, or back
+     * onto the product row. A count of 0 folds the stripes back into the product row.
+     */
+    @Transactional
+    public ProductResponse setStockStripes(Long productId, int stripes) {
+        if (stripes < 0 || stripes > MAX_STOCK_STRIPES) {
+            throw new BadRequestException("Stock stripes must be between 0 and " + MAX_STOCK_STRIPES);
+        }
+        ProductStockStripeJdbcRepository.ProductStock current = productStockStripeJdbcRepository.lockProduct(productId);
+        if (current == null) {
+            throw new ResourceNotFoundException("Product not found with id: " + productId);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        stockReservationJdbcRepository.lockHolds(productId);
+        int total = current.stockQuantity();
+        if (current.stripes() > 0) {
+            Stripes old = productStockStripeJdbcRepository.lockStripes(productId);
+            total = sum(old.quantities()) + sum(old.held());
+        }
+        int[] held = stockReservationJdbcRepository.moveHoldsToStripes(productId, stripes, now);
+        productStockStripeJdbcRepository.replaceStripes(productId,
+            new Stripes(spread(Math.max(total - sum(held), 0), stripes), held));
+        productStockStripeJdbcRepository.updateProductStripes(productId, stripes, total, now);
+        log.info("Product {} now keeps its stock of {} in {} stripes", productId, total, stripes);
+
+        ProductResponse product = productJdbcRepository.findByIds(List.of(productId)).get(0);
+        eventPublisher.publishEvent(ProductChangedEvent.upserted(product));
+        return product;
+    }
+
+    /**
+     * Copies stripe totals into products.stock_quantity, so reads of striped products report
+     * their sum. Checkouts of a hot product publish no change events themselves; this does, at
+     * most once per interval per product.
+     */
+    @Scheduled(fixedDelayString = "${inventory.stripes.rollup-interval-ms:2000}")
+    @Transactional
+    public void rollUpStripedStock() {
+        List<Long> changed = productStockStripeJdbcRepository.rollUpTotals(LocalDateTime.now());
+        if (changed.isEmpty()) {
+            return;
+        }
+        productJdbcRepository.findByIds(changed)
+            .forEach(product -> eventPublisher.publishEvent(ProductChangedEvent.stockChanged(product)));
+        log.debug("Rolled up striped stock of {} products", changed.size());
+    }
+
+    /**
+     * Holds quantity units of a striped product for a shopper, moving them from one stripe's
+     * sellable quantity to its held count. The units of the shopper's previous hold, already
+     * deleted by the caller, are given up in the same step. Like checkout, tries a single stripe
+     * before locking them all. When too little is left, either throws or, with partial, holds
+     * what there is. Returns the new hold, or null when nothing is held or the product is no
+     * longer striped.
+     */
+    @Transactional
+    public StripeHold holdOnStripes(Long productId, int quantity, boolean partial, StripeHold previous) {
+        Integer stripes = productStockStripeJdbcRepository.findStripeCounts(List.of(productId)).get(productId);
+        if (stripes == null) {
+            return null;
+        }
+        int released = previous != null ? previous.quantity() : 0;
+        int stripe = previous != null ? previous.stripe() : ThreadLocalRandom.current().nextInt(stripes);
+        if (quantity > 0 && productStockStripeJdbcRepository.tryHold(productId, stripe, quantity, released)) {
+            return new StripeHold(productId, stripe, quantity);
+        }
+
+        Stripes locked = lockStripes(productId, previous, LocalDateTime.now());
+        if (locked.count() == 0) {
+            return null;
+        }
+        int available = sum(locked.quantities());
+        if (available < quantity && !partial) {
+            throw new BadRequestException("Insufficient stock for product id " + productId
+                + ". Available: " + available);
+        }
+        int held = Math.min(quantity, available);
+        stripe = ThreadLocalRandom.current().nextInt(locked.count());
+        locked.held()[stripe] += held;
+        productStockStripeJdbcRepository.setStripes(productId,
+            new Stripes(spread(available - held, locked.count()), locked.held()));
+        return held > 0 ? new StripeHold(productId, stripe, held) : null;
+    }
+
+    /**
+     * Splits total as evenly as possible over the given number of stripes, the remainder going to
+     * the lowest stripes.
+     */
+    static int[] spread(int total, int stripes) {
+        int[] quantities = new int[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            quantities[stripe] = total / stripes + (stripe < total % stripes ? 1 : 0);
+        }
+        return quantities;
+    }
+
+    /**
+     * Takes quantity from one stripe, which locks only that stripe: the one the buyer's hold sits
+     * on, whose held units count towards the take, or else a random one. When that stripe is too
+     * low, locks all of them, borrows across them and evens them out again, so the next buyers
+     * find stock wherever they land. Returns -1 on success, otherwise the units available.
+     */
+    private int takeFromStripes(Long productId, int stripes, int quantity, StripeHold hold, LocalDateTime now) {
+        int released = hold != null ? hold.quantity() : 0;
+        int stripe = hold != null ? hold.stripe() : ThreadLocalRandom.current().nextInt(stripes);
+        if (productStockStripeJdbcRepository.tryTake(productId, stripe, quantity, released)) {
+            return -1;
+        }
+
+        Stripes locked = lockStripes(productId, hold, now);
+        int available = sum(locked.quantities());
+        if (available < quantity) {
+            return available;
+        }
+        productStockStripeJdbcRepository.setStripes(productId,
+            new Stripes(spread(available - quantity, locked.count()), locked.held()));
+        return -1;
+    }
+
+    /**
+     * Locks every stripe of the product and folds the units of the caller's deleted hold and of
+     * expired holds back into what the stripes sell, as they would be once those holds let go.
+     */
+    private Stripes lockStripes(Long productId, StripeHold released, LocalDateTime now) {
+        Stripes locked = productStockStripeJdbcRepository.lockStripes(productId);
+        List<StripeHold> freed = new ArrayList<>(stockReservationJdbcRepository.takeExpiredOnStripes(productId, now));
+        if (released != null) {
+            freed.add(released);
+        }
+        for (StripeHold hold : freed) {
+            if (hold.stripe() < locked.count()) {
+                locked.quantities()[hold.stripe()] += hold.quantity();
+                locked.held()[hold.stripe()] -= hold.quantity();
+            }
+        }
+        return locked;
+    }
+
+    private void releaseStripeHolds(Collection<StripeHold> holds) {
+        holds.forEach(hold ->
+            productStockStripeJdbcRepository.tryTake(hold.productId(), hold.stripe(), 0, hold.quantity()));
+    }
+
+    private static int sum(int[] quantities) {
+        int total = 0;
+        for (int quantity : quantities) {
+            total += quantity;
+        }
+        return total;
+    }
+}
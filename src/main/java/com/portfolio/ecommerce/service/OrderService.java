@@ -1,69 +1,73 @@
 package com.portfolio.ecommerce.service;
 
 import com.portfolio.ecommerce.dto.OrderItemResponse;
+import com.portfolio.ecommerce.dto.OrderPageResponse;
 import com.portfolio.ecommerce.dto.OrderResponse;
+import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.*;
+import com.portfolio.ecommerce.repository.OrderItemRepository;
+import com.portfolio.ecommerce.repository.OrderJdbcRepository;
 import com.portfolio.ecommerce.repository.OrderRepository;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository;
 import com.portfolio.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    private static final BigDecimal TAX_RATE = new BigDecimal("0.10");
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final OrderJdbcRepository orderJdbcRepository;
     private final UserRepository userRepository;
-    private final CartService cartService;
+    private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
 
+    /**
+     * Turns the user's cart into an order with a few set-based statements: the cart lines are
+     * moved into order lines and summed in SQL, so checkout cost does not grow with cart size.
+     */
     @Transactional
-    public OrderResponse createOrderFromCart(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public OrderResponse createOrderFromCart(Long userId) {
+        OrderJdbcRepository.CheckedOutOrder order = orderJdbcRepository
+                .checkoutCart(userId, TAX_RATE, LocalDateTime.now())
+                .orElseThrow(() -> new BadRequestException("Cannot create order from empty cart"));
+        // Holds on stripes keep their units until decrementStock takes them with the order
+        Map<Long, StockReservationJdbcRepository.StripeHold> stripeHolds = stockReservationService.claimAll(userId);
 
-        Cart cart = user.getCart();
-        if (cart == null || cart.getItems().isEmpty()) {
-            throw new IllegalStateException("Cannot create order from empty cart");
-        }
+        Map<Long, Integer> quantities = new HashMap<>();
+        order.lines().forEach(line -> quantities.merge(line.productId(), line.quantity(), Integer::sum));
 
-        // Calculate totals
-        BigDecimal subtotal = cart.getTotalPrice();
-        BigDecimal tax = subtotal.multiply(new BigDecimal("0.10")); // 10% tax
-        BigDecimal totalPrice = subtotal.add(tax);
-
-        // Create order
-        Order order = Order.builder()
-                .user(user)
-                .subtotal(subtotal)
-                .tax(tax)
-                .totalPrice(totalPrice)
+        // Take stock last so the product row locks are held only until commit; a shortage
+        // throws and rolls back the order and the cart clear with it
+        inventoryService.decrementStock(quantities, userId, stripeHolds);
+
+        return OrderResponse.builder()
+                .id(order.id())
+                .itemCount(order.lines().size())
+                .orderDate(order.orderDate())
+                .subtotal(order.subtotal())
+                .tax(order.tax())
+                .totalPrice(order.totalPrice())
                 .status(Order.OrderStatus.PENDING)
+                .items(order.lines().stream()
+                        .map(this::mapItemToResponse)
+                        .collect(Collectors.toList()))
                 .build();
-
-        // Create order items from cart items
-        for (CartItem cartItem : cart.getItems()) {
-            OrderItem orderItem = OrderItem.builder()
-                    .order(order)
-                    .product(cartItem.getProduct())
-                    .quantity(cartItem.getQuantity())
-                    .price(cartItem.getPrice())
-                    .subtotal(cartItem.getSubtotal())
-                    .build();
-            order.getItems().add(orderItem);
-        }
-
-        // Save order
-        Order savedOrder = orderRepository.save(order);
-
-        // Clear cart
-        cartService.clearCart(user.getId());
-
-        return mapToResponse(savedOrder);
     }
 
     @Transactional(readOnly = true)
@@ -71,18 +75,67 @@ public class OrderService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        List<Order> orders = orderRepository.findByUserIdOrderByOrderDateDesc(user.getId());
+        List<Order> orders = orderRepository.findWithItemsByUserId(user.getId());
         return orders.stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * A page of the user's orders, newest first, in two queries whatever the page size: one for
+     * the order headers, then one for all their lines with products, or in summary mode only
+     * their line counts.
+     */
+    @Transactional(readOnly = true)
+    public OrderPageResponse getUserOrdersPage(Long userId, String cursor, Integer limit, boolean summary) {
+        OrderCursor after = cursor != null && !cursor.isBlank() ? OrderCursor.decode(cursor) : null;
+        int pageSize = resolvePageSize(limit);
+        // Fetch one extra row to learn whether another page exists without a COUNT query
+        List<Order> rows = orderRepository.findByUserIdOrderByOrderDateDesc(userId,
+                after != null ? after.getOrderDate() : null, after != null ? after.getId() : 0L,
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Order> page = hasMore ? rows.subList(0, pageSize) : rows;
+        List<Long> orderIds = page.stream().map(Order::getId).collect(Collectors.toList());
+        String nextCursor = hasMore ? OrderCursor.after(page.get(page.size() - 1)).encode() : null;
+
+        List<OrderResponse> orders;
+        if (orderIds.isEmpty()) {
+            orders = List.of();
+        } else if (summary) {
+            Map<Long, Long> counts = orderItemRepository.countByOrderIdIn(orderIds).stream()
+                    .collect(Collectors.toMap(OrderItemRepository.OrderItemCountView::getOrderId,
+                            OrderItemRepository.OrderItemCountView::getItemCount));
+            orders = page.stream()
+                    .map(order -> mapToResponse(order, null, counts.getOrDefault(order.getId(), 0L).intValue()))
+                    .collect(Collectors.toList());
+        } else {
+            // getOrder().getId() reads the id off the proxy, so the orders are not loaded again
+            Map<Long, List<OrderItemResponse>> lines = orderItemRepository.findWithProductByOrderIdIn(orderIds).stream()
+                    .collect(Collectors.groupingBy(item -> item.getOrder().getId(),
+                            Collectors.mapping(this::mapItemToResponse, Collectors.toList())));
+            orders = page.stream()
+                    .map(order -> {
+                        List<OrderItemResponse> orderLines = lines.getOrDefault(order.getId(), List.of());
+                        return mapToResponse(order, orderLines, orderLines.size());
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        return OrderPageResponse.builder()
+                .items(orders)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
     @Transactional(readOnly = true)
     public OrderResponse getOrderById(Long orderId, String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         // Verify order belongs to user
@@ -97,7 +150,10 @@ public class OrderService {
         List<OrderItemResponse> itemResponses = order.getItems().stream()
                 .map(this::mapItemToResponse)
                 .collect(Collectors.toList());
+        return mapToResponse(order, itemResponses, itemResponses.size());
+    }
 
+    private OrderResponse mapToResponse(Order order, List<OrderItemResponse> items, int itemCount) {
         return OrderResponse.builder()
                 .id(order.getId())
                 .orderDate(order.getOrderDate())
@@ -105,11 +161,13 @@ public class OrderService {
                 .tax(order.getTax())
                 .totalPrice(order.getTotalPrice())
                 .status(order.getStatus())
-                .items(itemResponses)
+                .itemCount(itemCount)
+                .items(items)
                 .build();
     }
 
     private OrderItemResponse mapItemToResponse(OrderItem item) {
+        // Only for lines loaded with their product fetched
         Product product = item.getProduct();
         return OrderItemResponse.builder()
                 .id(item.getId())
@@ -121,4 +179,26 @@ public class OrderService {
                 .subtotal(item.getSubtotal())
                 .build();
     }
+
+    private OrderItemResponse mapItemToResponse(OrderJdbcRepository.Line line) {
+        return OrderItemResponse.builder()
+                .id(line.id())
+                .productId(line.productId())
+                .productName(line.productName())
+                .productImageUrl(line.productImageUrl())
+                .quantity(line.quantity())
+                .price(line.price())
+                .subtotal(line.subtotal())
+                .build();
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
 }
@@ -0,0 +1,91 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.model.Product;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Opaque keyset cursor for product listings. Encodes the sort field together with the
+ * sort key and id of the last product on a page, so the next page can seek past it.
+ */
+@Getter
+final class ProductCursor {
+
+    enum Sort {
+        ID, PRICE, CREATED_AT;
+
+        static Sort parse(String value) {
+            if (value == null || value.isBlank()) {
+                return ID;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "id" -> ID;
+                case "price" -> PRICE;
+                case "createdat", "created_at" -> CREATED_AT;
+                default -> throw new BadRequestException("Unsupported sort: " + value + ". Use id, price or createdAt");
+            };
+        }
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final Sort sort;
+    private final String key;
+    private final Long lastId;
+
+    private ProductCursor(Sort sort, String key, Long lastId) {
+        this.sort = sort;
+        this.key = key;
+        this.lastId = lastId;
+    }
+
+    static ProductCursor after(Sort sort, Product last) {
+        String key = switch (sort) {
+            case PRICE -> last.getPrice().toPlainString();
+            case CREATED_AT -> last.getCreatedAt().toString();
+            default -> "";
+        };
+        return new ProductCursor(sort, key, last.getId());
+    }
+
+    static ProductCursor decode(String token, Sort expectedSort) {
+        ProductCursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            cursor = new ProductCursor(Sort.valueOf(parts[0]), parts[1], Long.parseLong(parts[2]));
+            // Parse eagerly so a tampered key fails here rather than inside the query
+            cursor.priceKey();
+            cursor.createdAtKey();
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (cursor.sort != expectedSort) {
+            throw new BadRequestException("Cursor was issued for sort " + cursor.sort.name().toLowerCase(Locale.ROOT));
+        }
+        return cursor;
+    }
+
+    String encode() {
+        String raw = sort.name() + SEPARATOR + key + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    BigDecimal priceKey() {
+        return sort == Sort.PRICE ? new BigDecimal(key) : null;
+    }
+
+    LocalDateTime createdAtKey() {
+        return sort == Sort.CREATED_AT ? LocalDateTime.parse(key) : null;
+    }
+}
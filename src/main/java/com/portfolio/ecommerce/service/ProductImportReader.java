@@ -0,0 +1,201 @@
+package com.portfolio.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolio.ecommerce.dto.ProductRequest;
+import com.portfolio.ecommerce.exception.BadRequestException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Pulls one product at a time out of a CSV or NDJSON upload, so an import never holds more than
+ * the current record in memory. A record that cannot be parsed comes back as a row with an error
+ * instead of failing the whole upload.
+ */
+abstract class ProductImportReader {
+
+    record Row(long line, ProductRequest request, String error) {
+    }
+
+    protected final BufferedReader reader;
+
+    private ProductImportReader(InputStream body) {
+        this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the next record, or null once the body is exhausted.
+     */
+    abstract Row next() throws IOException;
+
+    static ProductImportReader csv(InputStream body) throws IOException {
+        return new Csv(body);
+    }
+
+    static ProductImportReader ndjson(InputStream body, ObjectMapper objectMapper) {
+        return new Ndjson(body, objectMapper);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static final class Ndjson extends ProductImportReader {
+
+        private final ObjectMapper objectMapper;
+        private long line;
+
+        private Ndjson(InputStream body, ObjectMapper objectMapper) {
+            super(body);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        Row next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+            } while (text.isBlank());
+
+            try {
+                ProductRequest request = objectMapper.readValue(text, ProductRequest.class);
+                request.setSku(blankToNull(request.getSku()));
+                return new Row(line, request, null);
+            } catch (JsonProcessingException ex) {
+                return new Row(line, null, "Malformed JSON: " + ex.getOriginalMessage());
+            }
+        }
+    }
+
+    /**
+     * RFC 4180 style CSV with a header row. Columns are matched by name, ignoring case and
+     * underscores, so both stockQuantity and stock_quantity work. Quoted fields may contain
+     * commas, doubled quotes and line breaks.
+     */
+    private static final class Csv extends ProductImportReader {
+
+        private static final List<String> REQUIRED_COLUMNS = List.of("name", "price", "stockquantity", "categoryid");
+
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long line;
+
+        private Csv(InputStream body) throws IOException {
+            super(body);
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new BadRequestException("CSV import body is empty");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+            }
+            for (String column : REQUIRED_COLUMNS) {
+                if (!columns.containsKey(column)) {
+                    throw new BadRequestException("CSV header is missing required column: " + column);
+                }
+            }
+        }
+
+        @Override
+        Row next() throws IOException {
+            List<String> fields;
+            long start;
+            do {
+                start = line + 1;
+                fields = readRecord();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isBlank());
+
+            try {
+                String active = field(fields, "active");
+                ProductRequest request = ProductRequest.builder()
+                    .name(field(fields, "name"))
+                    .description(field(fields, "description"))
+                    .price(parse(fields, "price", BigDecimal::new))
+                    .stockQuantity(parse(fields, "stockquantity", Integer::valueOf))
+                    .imageUrl(field(fields, "imageurl"))
+                    .sku(field(fields, "sku"))
+                    .categoryId(parse(fields, "categoryid", Long::valueOf))
+                    .active(active == null || Boolean.parseBoolean(active))
+                    .build();
+                return new Row(start, request, null);
+            } catch (NumberFormatException ex) {
+                return new Row(start, null, ex.getMessage());
+            }
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            return index != null && index < fields.size() ? blankToNull(fields.get(index)) : null;
+        }
+
+        private <T> T parse(List<String> fields, String column, Function<String, T> parser) {
+            String value = field(fields, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return parser.apply(value);
+            } catch (NumberFormatException ex) {
+                throw new NumberFormatException("Invalid " + column + ": " + value);
+            }
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            line++;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
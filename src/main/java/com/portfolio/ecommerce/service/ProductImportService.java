@@ -0,0 +1,207 @@
+package com.portfolio.ecommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolio.ecommerce.dto.ProductImportResponse;
+import com.portfolio.ecommerce.dto.ProductRequest;
+import com.portfolio.ecommerce.event.ProductsImportedEvent;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.model.Category;
+import com.portfolio.ecommerce.repository.CategoryRepository;
+import com.portfolio.ecommerce.repository.ProductJdbcRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk catalog import. Categories and existing SKUs are loaded once into memory, rows are
+ * validated as they stream in and written with JDBC batches, one transaction per batch. A failed
+ * batch rejects only its own rows; batches committed before it stay in place.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final long PROGRESS_LOG_INTERVAL = 50_000;
+
+    private final CategoryRepository categoryRepository;
+    private final ProductJdbcRepository productJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<String, ImportTally> running = new ConcurrentHashMap<>();
+
+    public ProductImportResponse importProducts(InputStream body, MediaType contentType) {
+        ImportTally tally = new ImportTally(UUID.randomUUID().toString());
+        running.put(tally.importId, tally);
+        try {
+            ProductImportReader reader = TEXT_CSV.isCompatibleWith(contentType)
+                ? ProductImportReader.csv(body)
+                : ProductImportReader.ndjson(body, objectMapper);
+            Set<Long> categoryIds = categoryRepository.findAll().stream()
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+            Set<String> skus = productJdbcRepository.findAllSkus();
+            log.info("Product import {} started, {} existing SKUs", tally.importId, skus.size());
+
+            List<ProductRequest> batch = new ArrayList<>(BATCH_SIZE);
+            List<Long> lines = new ArrayList<>(BATCH_SIZE);
+            for (ProductImportReader.Row row = reader.next(); row != null; row = reader.next()) {
+                tally.rowsRead++;
+                String error = row.error() != null ? row.error() : validate(row.request(), categoryIds, skus);
+                if (error != null) {
+                    tally.reject(row.line(), error);
+                    continue;
+                }
+                if (row.request().getSku() != null) {
+                    skus.add(row.request().getSku());
+                }
+                batch.add(row.request());
+                lines.add(row.line());
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, lines, skus, tally);
+                }
+                if (tally.rowsRead % PROGRESS_LOG_INTERVAL == 0) {
+                    log.info("Product import {}: {} rows read, {} imported, {} rejected",
+                        tally.importId, tally.rowsRead, tally.imported, tally.rejected);
+                }
+            }
+            flush(batch, lines, skus, tally);
+        } catch (IOException ex) {
+            log.warn("Product import {} aborted after {} rows: {}", tally.importId, tally.rowsRead, ex.getMessage());
+            // Batches flushed before the body broke are committed, so read models still need them
+            publishImported(tally);
+            throw new BadRequestException("Could not read import body after " + tally.rowsRead
+                + " rows (" + tally.imported + " already imported): " + ex.getMessage());
+        } finally {
+            running.remove(tally.importId);
+        }
+        publishImported(tally);
+
+        ProductImportResponse response = tally.toResponse("COMPLETED");
+        log.info("Product import {} finished: {} imported, {} rejected in {} ms",
+            tally.importId, tally.imported, tally.rejected, response.getDurationMs());
+        return response;
+    }
+
+    public List<ProductImportResponse> getRunningImports() {
+        return running.values().stream()
+            .map(tally -> tally.toResponse("RUNNING"))
+            .collect(Collectors.toList());
+    }
+
+    private void publishImported(ImportTally tally) {
+        if (tally.imported > 0) {
+            eventPublisher.publishEvent(new ProductsImportedEvent(tally.imported));
+        }
+    }
+
+    private String validate(ProductRequest request, Set<Long> categoryIds, Set<String> skus) {
+        Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+        }
+        if (!categoryIds.contains(request.getCategoryId())) {
+            return "Category not found with id: " + request.getCategoryId();
+        }
+        if (request.getSku() != null && skus.contains(request.getSku())) {
+            return "Product with SKU " + request.getSku() + " already exists";
+        }
+        return null;
+    }
+
+    private void flush(List<ProductRequest> batch, List<Long> lines, Set<String> skus, ImportTally tally) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // Sorted so concurrent imports touch category rows in the same order
+            Map<Long, Integer> perCategory = new TreeMap<>();
+            batch.forEach(product -> perCategory.merge(product.getCategoryId(), 1, Integer::sum));
+            transactionTemplate.executeWithoutResult(status -> {
+                productJdbcRepository.insertBatch(batch, LocalDateTime.now());
+                perCategory.forEach(categoryRepository::adjustProductCount);
+            });
+            tally.imported += batch.size();
+        } catch (DataAccessException ex) {
+            String message = "Batch insert failed: " + ex.getMostSpecificCause().getMessage();
+            log.warn("Product import {} lost a batch of {} rows: {}", tally.importId, batch.size(), message);
+            for (int i = 0; i < batch.size(); i++) {
+                tally.reject(lines.get(i), message);
+                if (batch.get(i).getSku() != null) {
+                    skus.remove(batch.get(i).getSku());
+                }
+            }
+        }
+        batch.clear();
+        lines.clear();
+    }
+
+    /**
+     * Counters for one import. Only the importing thread writes them; status requests read
+     * slightly stale values, which is fine for a progress report.
+     */
+    private static final class ImportTally {
+        private final String importId;
+        private final long startedAt = System.nanoTime();
+        private final List<ProductImportResponse.RowError> errors =
+            Collections.synchronizedList(new ArrayList<>());
+        private volatile long rowsRead;
+        private volatile long imported;
+        private volatile long rejected;
+
+        private ImportTally(String importId) {
+            this.importId = importId;
+        }
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportResponse.RowError(line, message));
+            }
+        }
+
+        private ProductImportResponse toResponse(String status) {
+            List<ProductImportResponse.RowError> reported;
+            synchronized (errors) {
+                reported = new ArrayList<>(errors);
+            }
+            return ProductImportResponse.builder()
+                .importId(importId)
+                .status(status)
+                .rowsRead(rowsRead)
+                .imported(imported)
+                .rejected(rejected)
+                .durationMs((System.nanoTime() - startedAt) / 1_000_000)
+                .errors(reported)
+                .build();
+        }
+    }
+}
@@ -1,62 +1,274 @@
 package com.portfolio.ecommerce.service;
 
+import com.portfolio.ecommerce.catalog.ProductFacetSnapshot;
+import com.portfolio.ecommerce.catalog.ProductSearchIndex;
+import com.portfolio.ecommerce.catalog.ProductSuggester;
+import com.portfolio.ecommerce.config.CacheConfig;
+import com.portfolio.ecommerce.dto.ProductFacetResponse;
+import com.portfolio.ecommerce.dto.ProductLookupResponse;
+import com.portfolio.ecommerce.dto.ProductPageResponse;
 import com.portfolio.ecommerce.dto.ProductRequest;
 import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.dto.ProductSuggestionResponse;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import com.portfolio.ecommerce.event.ProductsImportedEvent;
 import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.Category;
 import com.portfolio.ecommerce.model.Product;
 import com.portfolio.ecommerce.repository.CategoryRepository;
 import com.portfolio.ecommerce.repository.ProductRepository;
+import com.portfolio.ecommerce.repository.ProductStockStripeJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final int MAX_SEARCH_LIMIT = 500;
+    private static final int DEFAULT_SUGGEST_LIMIT = 8;
+    private static final int DEFAULT_PRICE_BUCKETS = 10;
+    private static final int MAX_PRICE_BUCKETS = 50;
+    private static final int MAX_LOOKUP_IDS = 200;
+    private static final int EXPORT_BUFFER_BYTES = 64 * 1024;
+    private static final String CSV_HEADER = "id,name,description,price,stock_quantity,sku,category_id,"
+        + "category_name,image_url,active,created_at,updated_at\n";
+
     private final ProductRepository productRepository;
+    private final ProductStockStripeJdbcRepository productStockStripeJdbcRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggester productSuggester;
+    private final ProductFacetSnapshot productFacetSnapshot;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final CacheManager cacheManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildCatalogReadModels() {
+        List<ProductResponse> products = getAllProducts();
+        productSearchIndex.rebuild(products);
+        productFacetSnapshot.rebuild(products);
+    }
+
+    // Off the request thread, so the import response does not wait for a full catalog read
+    @Async
+    @EventListener(ProductsImportedEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildCatalogReadModels(ProductsImportedEvent event) {
+        buildCatalogReadModels();
+    }
 
     @Transactional(readOnly = true)
     public List<ProductResponse> getAllProducts() {
-        return productRepository.findAll().stream()
+        return productRepository.findAllWithCategory().stream()
             .map(this::mapToResponse)
             .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<ProductResponse> getActiveProducts() {
-        return productRepository.findByActiveTrue().stream()
+        return productRepository.findActiveWithCategory().stream()
             .map(this::mapToResponse)
             .collect(Collectors.toList());
     }
 
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS, key = "#id", sync = true)
     @Transactional(readOnly = true)
     public ProductResponse getProductById(Long id) {
-        Product product = productRepository.findById(id)
+        Product product = productRepository.findWithCategoryById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
         return mapToResponse(product);
     }
 
+    /**
+     * Looks up several products at once, in request order. Cached products are served from the
+     * product cache and the rest are loaded with a single IN query and cached on the way out.
+     * Deliberately not transactional, so an all-hit lookup never touches the database.
+     */
+    public List<ProductLookupResponse> getProductsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("At least one product id is required");
+        }
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new BadRequestException("At most " + MAX_LOOKUP_IDS + " product ids can be looked up at once");
+        }
+
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        Map<Long, ProductResponse> found = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            ProductResponse cached = cache != null && id != null ? cache.get(id, ProductResponse.class) : null;
+            if (cached != null) {
+                found.put(id, cached);
+            } else if (id != null) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Product product : productRepository.findAllWithCategoryByIdIn(missing)) {
+                ProductResponse response = mapToResponse(product);
+                found.put(product.getId(), response);
+                if (cache != null) {
+                    cache.putIfAbsent(product.getId(), response);
+                }
+            }
+        }
+
+        List<ProductLookupResponse> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductResponse product = found.get(id);
+            results.add(ProductLookupResponse.builder()
+                .id(id)
+                .found(product != null)
+                .product(product)
+                .build());
+        }
+        return results;
+    }
+
     @Transactional(readOnly = true)
     public List<ProductResponse> getProductsByCategory(Long categoryId) {
-        return productRepository.findByCategoryIdAndActiveTrue(categoryId).stream()
+        return productRepository.findActiveByCategoryIdWithCategory(categoryId).stream()
             .map(this::mapToResponse)
             .collect(Collectors.toList());
     }
 
-    @Transactional(readOnly = true)
     public List<ProductResponse> searchProducts(String keyword) {
-        return productRepository.searchByName(keyword).stream()
-            .map(this::mapToResponse)
-            .collect(Collectors.toList());
+        return searchProducts(keyword, null, null);
+    }
+
+    public List<ProductResponse> searchProducts(String keyword, String operator, Integer limit) {
+        ProductSearchIndex.Operator mode;
+        try {
+            mode = operator == null || operator.isBlank()
+                ? ProductSearchIndex.Operator.AND
+                : ProductSearchIndex.Operator.valueOf(operator.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Unsupported search operator: " + operator + ". Use and or or");
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("Limit must be positive");
+        }
+        int maxResults = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        return productSearchIndex.search(keyword, mode, maxResults);
+    }
+
+    @Transactional(readOnly = true)
+    public ProductPageResponse getProductsPage(boolean activeOnly, String sort, String cursor, Integer limit) {
+        return findPage(activeOnly, null, null, sort, cursor, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public ProductPageResponse getProductsByCategoryPage(Long categoryId, String sort, String cursor, Integer limit) {
+        return findPage(true, categoryId, null, sort, cursor, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public ProductPageResponse searchProductsPage(String keyword, String sort, String cursor, Integer limit) {
+        return findPage(true, null, keyword, sort, cursor, limit);
+    }
+
+    public List<ProductSuggestionResponse> suggestProducts(String prefix, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("Limit must be positive");
+        }
+        int maxResults = limit == null ? DEFAULT_SUGGEST_LIMIT : Math.min(limit, ProductSuggester.MAX_SUGGESTIONS);
+        return productSuggester.suggest(prefix, maxResults);
+    }
+
+    /**
+     * Version of a product list as returned by {@link #getAllProducts()}, {@link #getActiveProducts()}
+     * or {@link #getProductsByCategory(Long)}. Category edits are included because responses
+     * embed the category name.
+     */
+    @Transactional(readOnly = true)
+    public ResourceVersion getProductsVersion(boolean activeOnly, Long categoryId) {
+        return ResourceVersion.of("products", productRepository.summarizeVersions(activeOnly, categoryId),
+            categoryRepository.summarizeVersions(false));
+    }
+
+    public ProductFacetResponse getFacets(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                          boolean inStockOnly, Integer buckets) {
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new BadRequestException("minPrice must not be greater than maxPrice");
+        }
+        if (buckets != null && buckets < 1) {
+            throw new BadRequestException("Buckets must be positive");
+        }
+        int bucketCount = buckets == null ? DEFAULT_PRICE_BUCKETS : Math.min(buckets, MAX_PRICE_BUCKETS);
+        return productFacetSnapshot.facets(categoryId, minPrice, maxPrice, inStockOnly, bucketCount);
+    }
+
+    /**
+     * Writes the catalog to {@code out} straight from a database cursor. Each entity is detached
+     * once written, so memory use does not grow with the size of the catalog.
+     */
+    @Transactional(readOnly = true)
+    public void exportProducts(ProductExportFormat format, boolean activeOnly, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, EXPORT_BUFFER_BYTES);
+        ObjectWriter jsonWriter = objectMapper.writerFor(ProductResponse.class);
+        if (format == ProductExportFormat.CSV) {
+            buffered.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+
+        long exported = 0;
+        try (Stream<Product> products = productRepository.streamForExport(activeOnly)) {
+            Iterator<Product> rows = products.iterator();
+            while (rows.hasNext()) {
+                Product product = rows.next();
+                ProductResponse response = mapToResponse(product);
+                entityManager.detach(product);
+                if (format == ProductExportFormat.CSV) {
+                    buffered.write(toCsvLine(response).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    buffered.write(jsonWriter.writeValueAsBytes(response));
+                    buffered.write('\n');
+                }
+                exported++;
+            }
+        }
+        buffered.flush();
+        log.info("Exported {} products as {}", exported, format);
     }
 
     @Transactional
@@ -80,8 +292,11 @@ public class ProductService {
             .build();
 
         Product savedProduct = productRepository.save(product);
+        categoryRepository.adjustProductCount(category.getId(), 1);
         log.info("Product created successfully: {}", savedProduct.getName());
-        return mapToResponse(savedProduct);
+        ProductResponse response = mapToResponse(savedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.upserted(response));
+        return response;
     }
 
     @Transactional
@@ -97,6 +312,7 @@ public class ProductService {
         Category category = categoryRepository.findById(request.getCategoryId())
             .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + request.getCategoryId()));
 
+        Long previousCategoryId = product.getCategory() != null ? product.getCategory().getId() : null;
         product.setName(request.getName());
         product.setDescription(request.getDescription());
         product.setPrice(request.getPrice());
@@ -106,9 +322,22 @@ public class ProductService {
         product.setActive(request.getActive());
         product.setCategory(category);
 
-        Product updatedProduct = productRepository.save(product);
+        // Flush so the response, which is also what gets cached, carries the new version
+        Product updatedProduct = productRepository.saveAndFlush(product);
+        if (updatedProduct.getStockStripes() > 0) {
+            // A striped product's new stock is spread over its stripes, which checkout takes from.
+            // Units shoppers hold stay on their stripes, the rest is what is left to sell.
+            ProductStockStripeJdbcRepository.Stripes stripes = productStockStripeJdbcRepository.lockStripes(id);
+            int held = Arrays.stream(stripes.held()).sum();
+            productStockStripeJdbcRepository.setStripes(id, new ProductStockStripeJdbcRepository.Stripes(
+                InventoryService.spread(Math.max(request.getStockQuantity() - held, 0), stripes.count()),
+                stripes.held()));
+        }
+        moveProductCount(previousCategoryId, category.getId());
         log.info("Product updated successfully: {}", updatedProduct.getName());
-        return mapToResponse(updatedProduct);
+        ProductResponse response = mapToResponse(updatedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.upserted(response));
+        return response;
     }
 
     @Transactional
@@ -116,8 +345,113 @@ public class ProductService {
         Product product = productRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
         
+        if (product.getCategory() != null) {
+            categoryRepository.adjustProductCount(product.getCategory().getId(), -1);
+        }
+        if (product.getStockStripes() > 0) {
+            productStockStripeJdbcRepository.deleteStripes(id);
+        }
         productRepository.delete(product);
         log.info("Product deleted successfully with id: {}", id);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(id));
+    }
+
+    private void moveProductCount(Long fromCategoryId, Long toCategoryId) {
+        if (Objects.equals(fromCategoryId, toCategoryId)) {
+            return;
+        }
+        // Lower id first, so two moves in opposite directions cannot deadlock on the category rows
+        if (fromCategoryId != null && fromCategoryId < toCategoryId) {
+            categoryRepository.adjustProductCount(fromCategoryId, -1);
+            categoryRepository.adjustProductCount(toCategoryId, 1);
+        } else {
+            categoryRepository.adjustProductCount(toCategoryId, 1);
+            if (fromCategoryId != null) {
+                categoryRepository.adjustProductCount(fromCategoryId, -1);
+            }
+        }
+    }
+
+    private ProductPageResponse findPage(boolean activeOnly, Long categoryId, String keyword,
+                                         String sort, String cursor, Integer limit) {
+        ProductCursor.Sort sortBy = ProductCursor.Sort.parse(sort);
+        ProductCursor after = cursor != null && !cursor.isBlank() ? ProductCursor.decode(cursor, sortBy) : null;
+        int pageSize = resolvePageSize(limit);
+        // Fetch one extra row to learn whether another page exists without a COUNT query
+        Pageable window = PageRequest.of(0, pageSize + 1);
+
+        List<Product> rows = categoryId != null
+            ? findCategoryPageRows(categoryId, sortBy, after, window)
+            : findPageRows(activeOnly, keyword, sortBy, after, window);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Product> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? ProductCursor.after(sortBy, page.get(page.size() - 1)).encode() : null;
+
+        return ProductPageResponse.builder()
+            .items(page.stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList()))
+            .nextCursor(nextCursor)
+            .hasMore(hasMore)
+            .build();
+    }
+
+    private List<Product> findPageRows(boolean activeOnly, String keyword, ProductCursor.Sort sortBy,
+                                       ProductCursor after, Pageable window) {
+        return switch (sortBy) {
+            case PRICE -> after == null
+                ? productRepository.findFirstPageOrderByPrice(activeOnly, keyword, window)
+                : productRepository.findPageOrderByPrice(activeOnly, keyword, after.priceKey(), after.getLastId(), window);
+            case CREATED_AT -> after == null
+                ? productRepository.findFirstPageOrderByCreatedAt(activeOnly, keyword, window)
+                : productRepository.findPageOrderByCreatedAt(activeOnly, keyword, after.createdAtKey(),
+                    after.getLastId(), window);
+            default -> productRepository.findPageOrderById(activeOnly, keyword,
+                after != null ? after.getLastId() : 0L, window);
+        };
+    }
+
+    private List<Product> findCategoryPageRows(Long categoryId, ProductCursor.Sort sortBy, ProductCursor after,
+                                               Pageable window) {
+        return switch (sortBy) {
+            case PRICE -> after == null
+                ? productRepository.findFirstCategoryPageOrderByPrice(categoryId, window)
+                : productRepository.findCategoryPageOrderByPrice(categoryId, after.priceKey(), after.getLastId(),
+                    window);
+            case CREATED_AT -> after == null
+                ? productRepository.findFirstCategoryPageOrderByCreatedAt(categoryId, window)
+                : productRepository.findCategoryPageOrderByCreatedAt(categoryId, after.createdAtKey(),
+                    after.getLastId(), window);
+            default -> productRepository.findCategoryPageOrderById(categoryId,
+                after != null ? after.getLastId() : 0L, window);
+        };
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private String toCsvLine(ProductResponse product) {
+        return String.join(",",
+            csv(product.getId()), csv(product.getName()), csv(product.getDescription()), csv(product.getPrice()),
+            csv(product.getStockQuantity()), csv(product.getSku()), csv(product.getCategoryId()),
+            csv(product.getCategoryName()), csv(product.getImageUrl()), csv(product.getActive()),
+            csv(product.getCreatedAt()), csv(product.getUpdatedAt())) + "\n";
+    }
+
+    private static String csv(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
     }
 
     private ProductResponse mapToResponse(Product product) {
@@ -127,11 +461,13 @@ public class ProductService {
             .description(product.getDescription())
             .price(product.getPrice())
             .stockQuantity(product.getStockQuantity())
+            .stockStripes(product.getStockStripes())
             .imageUrl(product.getImageUrl())
             .sku(product.getSku())
             .active(product.getActive())
             .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
             .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
+            .version(product.getVersion())
             .createdAt(product.getCreatedAt())
             .updatedAt(product.getUpdatedAt())
             .build();
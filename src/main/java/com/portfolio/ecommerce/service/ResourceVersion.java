@@ -0,0 +1,63 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.repository.VersionSummary;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * Strong entity tag and Last-Modified time for a resource, computed without loading the resource
+ * itself so controllers can answer conditional requests before doing any mapping.
+ */
+public final class ResourceVersion {
+
+    private final String tag;
+    @Getter
+    private final long lastModified;
+
+    private ResourceVersion(String tag, long lastModified) {
+        this.tag = tag;
+        this.lastModified = lastModified;
+    }
+
+    public static ResourceVersion of(String kind, Long id, Long version, LocalDateTime updatedAt) {
+        return new ResourceVersion(kind + "-" + id + "-v" + Objects.requireNonNullElse(version, 0L),
+            toEpochMillis(updatedAt));
+    }
+
+    /**
+     * Combines the summaries of every table a list representation is built from, e.g. products
+     * and the categories whose names they embed.
+     */
+    public static ResourceVersion of(String kind, VersionSummary... summaries) {
+        StringBuilder tag = new StringBuilder(kind);
+        long lastModified = -1;
+        for (VersionSummary summary : summaries) {
+            long updated = toEpochMillis(summary.getLastUpdated());
+            tag.append('-').append(summary.getRowCount())
+                .append('.').append(Objects.requireNonNullElse(summary.getVersionSum(), 0L))
+                .append('.').append(updated);
+            lastModified = Math.max(lastModified, updated);
+        }
+        return new ResourceVersion(tag.toString(), lastModified);
+    }
+
+    /**
+     * Folds in the last change to data the representation embeds but does not own.
+     */
+    public ResourceVersion dependingOn(LocalDateTime dependencyUpdatedAt) {
+        long updated = toEpochMillis(dependencyUpdatedAt);
+        return updated < 0 ? this : new ResourceVersion(tag + "-" + updated, Math.max(lastModified, updated));
+    }
+
+    public String getEtag() {
+        return '"' + tag + '"';
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        // -1 tells WebRequest.checkNotModified to ignore Last-Modified
+        return timestamp != null ? timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+}
@@ -0,0 +1,158 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds stock for cart lines for cart.reservation.hold-time, so a shopper who filled a cart can
+ * still check out while others keep buying. Holds live in stock_reservations and stop counting
+ * once expired; an in-memory timing wheel deletes them as they expire, without a timer per hold.
+ * The wheel is rebuilt from the table at startup, and an hourly purge clears holds whose node
+ * went away before deleting them.
+ *
+ * <p>Holds of striped hot products sit on one stripe, whose held count carries their units, so
+ * adding a hot product to the cart locks a stripe rather than the product row, and checkout
+ * takes the held units from that stripe.
+ */
+@Service
+@Slf4j
+public class StockReservationService {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 64;
+    // 64^4 one-second ticks reach past half a year, more than any sensible hold time
+    private static final int WHEEL_LEVELS = 4;
+
+    private final StockReservationJdbcRepository stockReservationJdbcRepository;
+    private final InventoryService inventoryService;
+    private final Duration holdTime;
+    private final TimingWheel<StockReservationJdbcRepository.Hold> wheel;
+
+    public StockReservationService(StockReservationJdbcRepository stockReservationJdbcRepository,
+                                   InventoryService inventoryService,
+                                   @Value("${cart.reservation.hold-time:15m}") Duration holdTime) {
+        this.stockReservationJdbcRepository = stockReservationJdbcRepository;
+        this.inventoryService = inventoryService;
+        this.holdTime = holdTime;
+        this.wheel = new TimingWheel<>(Duration.ofMillis(TICK_MILLIS), WHEEL_SLOTS, WHEEL_LEVELS,
+            System.currentTimeMillis());
+    }
+
+    /**
+     * Holds quantity units of the product for the user, replacing any earlier hold and restarting
+     * its clock. When other shoppers hold too much, either throws or, with partial, holds what is
+     * left. Takes the product row lock, or for a striped product a stripe lock, until the caller's
+     * transaction ends, so holds for the last units cannot race.
+     */
+    @Transactional
+    public void reserve(Long userId, Long productId, int quantity, boolean partial) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer available = stockReservationJdbcRepository.lockAvailable(productId, userId, now);
+        if (available == null) {
+            reserveOnStripes(userId, productId, quantity, partial, now);
+            return;
+        }
+        if (available < quantity && !partial) {
+            throw new BadRequestException("Insufficient stock for product id " + productId
+                + ". Available: " + Math.max(available, 0));
+        }
+        int held = Math.min(quantity, Math.max(available, 0));
+        if (held == 0) {
+            stockReservationJdbcRepository.deleteHold(userId, productId);
+            return;
+        }
+        LocalDateTime expiresAt = now.plus(holdTime);
+        stockReservationJdbcRepository.upsertHold(userId, productId, held, expiresAt, null);
+        wheel.schedule(new StockReservationJdbcRepository.Hold(userId, productId, expiresAt), toMillis(expiresAt));
+    }
+
+    /**
+     * Units of each product the user could still put in their cart: stock minus what other
+     * shoppers hold. Read without locks, so only a hint until reserve confirms it.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> availableToSell(Long userId, Collection<Long> productIds) {
+        return stockReservationJdbcRepository.findAvailable(userId, productIds, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void release(Long userId, Long productId) {
+        stockReservationJdbcRepository.deleteHold(userId, productId);
+    }
+
+    @Transactional
+    public void releaseAll(Long userId) {
+        stockReservationJdbcRepository.deleteHolds(userId);
+    }
+
+    /**
+     * Deletes all of the user's holds for checkout. Units held on stripes are not handed back but
+     * returned by product id, for the checkout to take from the stripes they sit on.
+     */
+    @Transactional
+    public Map<Long, StockReservationJdbcRepository.StripeHold> claimAll(Long userId) {
+        return stockReservationJdbcRepository.takeHolds(userId);
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void expireHolds() {
+        List<StockReservationJdbcRepository.Hold> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        stockReservationJdbcRepository.deleteExpired(due, LocalDateTime.now());
+        log.debug("Expired {} stock holds, {} still scheduled", due.size(), wheel.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void recoverHolds() {
+        int[] recovered = {0};
+        stockReservationJdbcRepository.forEachActiveHold(LocalDateTime.now(), hold -> {
+            wheel.schedule(hold, toMillis(hold.expiresAt()));
+            recovered[0]++;
+        });
+        log.info("Scheduled expiry of {} stock holds from the database", recovered[0]);
+    }
+
+    @Scheduled(fixedDelayString = "${cart.reservation.purge-interval-ms:3600000}",
+               initialDelayString = "${cart.reservation.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpiredHolds() {
+        int purged = stockReservationJdbcRepository.deleteAllExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired stock holds", purged);
+        }
+    }
+
+    // The previous hold is deleted first, so its row stays locked while its units move to the new one
+    private void reserveOnStripes(Long userId, Long productId, int quantity, boolean partial, LocalDateTime now) {
+        StockReservationJdbcRepository.StripeHold previous = stockReservationJdbcRepository.takeHold(userId, productId);
+        StockReservationJdbcRepository.StripeHold held =
+            inventoryService.holdOnStripes(productId, quantity, partial, previous);
+        if (held == null) {
+            return;
+        }
+        LocalDateTime expiresAt = now.plus(holdTime);
+        stockReservationJdbcRepository.upsertHold(userId, productId, held.quantity(), expiresAt, held.stripe());
+        wheel.schedule(new StockReservationJdbcRepository.Hold(userId, productId, expiresAt), toMillis(expiresAt));
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
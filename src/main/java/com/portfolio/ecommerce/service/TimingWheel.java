@@ -0,0 +1,106 @@
+package com.portfolio.ecommerce.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel. Each level is a ring of slots, and one slot of a level spans a full
+ * turn of the level below, so a few small levels cover days at one-tick resolution. Scheduling is
+ * O(1), and each tick only touches the slot that comes due, plus a higher level's slot once per
+ * turn of the level below, whose items move down a level.
+ *
+ * <p>Items cannot be cancelled. Callers re-check whatever an item stands for when it comes out,
+ * which also covers items that were rescheduled. Items come out at most one tick late, never
+ * early.
+ */
+public class TimingWheel<T> {
+
+    private record Entry<T>(T item, long dueTick) {
+    }
+
+    private final long tickMillis;
+    private final int slotCount;
+    private final long[] ticksPerSlot;
+    private final List<List<ArrayDeque<Entry<T>>>> levels = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(Duration tick, int slotCount, int levelCount, long nowMillis) {
+        this.tickMillis = tick.toMillis();
+        this.slotCount = slotCount;
+        this.ticksPerSlot = new long[levelCount];
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            ticksPerSlot[level] = span;
+            span = Math.multiplyExact(span, slotCount);
+            List<ArrayDeque<Entry<T>>> slots = new ArrayList<>(slotCount);
+            for (int slot = 0; slot < slotCount; slot++) {
+                slots.add(new ArrayDeque<>());
+            }
+            levels.add(slots);
+        }
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+    }
+
+    public synchronized void schedule(T item, long dueMillis) {
+        // Rounded up, so an item never comes out before it is due
+        place(new Entry<>(item, Math.floorDiv(dueMillis + tickMillis - 1, tickMillis)));
+        size++;
+    }
+
+    /**
+     * Moves the wheel up to the given time and returns the items that came due on the way.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<T> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Higher levels first, so items they hand down for this very tick come out below
+            for (int level = ticksPerSlot.length - 1; level >= 0; level--) {
+                if (currentTick % ticksPerSlot[level] != 0) {
+                    continue;
+                }
+                ArrayDeque<Entry<T>> slot = slot(level, currentTick / ticksPerSlot[level]);
+                List<Entry<T>> entries = new ArrayList<>(slot);
+                slot.clear();
+                for (Entry<T> entry : entries) {
+                    if (entry.dueTick() <= currentTick) {
+                        due.add(entry.item());
+                    } else {
+                        place(entry);
+                    }
+                }
+            }
+        }
+        size -= due.size();
+        return due;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        long ticksLeft = entry.dueTick() - currentTick;
+        if (ticksLeft <= 0) {
+            slot(0, currentTick + 1).add(entry);
+            return;
+        }
+        for (int level = 0; level < ticksPerSlot.length; level++) {
+            if (ticksLeft < ticksPerSlot[level] * slotCount) {
+                slot(level, entry.dueTick() / ticksPerSlot[level]).add(entry);
+                return;
+            }
+        }
+        // Beyond the wheel's range: park in the top level's furthest slot and place again from there
+        int top = ticksPerSlot.length - 1;
+        slot(top, currentTick / ticksPerSlot[top] + slotCount - 1).add(entry);
+    }
+
+    private ArrayDeque<Entry<T>> slot(int level, long slotTick) {
+        return levels.get(level).get((int) (slotTick % slotCount));
+    }
+}
@@ -20,20 +20,50 @@ document.addEventListener('DOMContentLoaded', async () => {
     }
 });
 
+// Last cart seen by this page; reloads and mutations only fetch what changed since its version
+let cartState = null;
+
+function applyCartResponse(cart) {
+    if (!cart.delta || !cartState) {
+        cartState = { ...cart, items: [...(cart.items || [])] };
+    } else {
+        const removed = new Set(cart.removedItemIds || []);
+        const changed = new Map((cart.items || []).map(item => [item.id, item]));
+        const items = cartState.items
+            .filter(item => !removed.has(item.id) && !changed.has(item.id))
+            .concat([...changed.values()]);
+        cartState = { ...cartState, ...cart, items };
+    }
+    displayCart(cartState);
+}
+
+// A mutation delta only covers that mutation; if the version skipped ahead, another tab changed
+// the cart too, so catch up from the version this page last saw
+async function applyMutationResponse(cart) {
+    const previousVersion = cartState ? cartState.version : null;
+    applyCartResponse(cart);
+    if (previousVersion !== null && cart.version > previousVersion + 1) {
+        cartState.version = previousVersion;
+        await loadCart();
+    }
+}
+
 async function loadCart() {
     const emptyCartEl = document.getElementById('empty-cart');
     const cartContentEl = document.getElementById('cart-content');
 
     try {
-        const response = await fetch(API_ENDPOINTS.CART, {
+        const url = cartState ? `${API_ENDPOINTS.CART}?sinceVersion=${cartState.version}` : API_ENDPOINTS.CART;
+        const response = await fetch(url, {
             headers: Auth.getAuthHeaders()
         });
 
+        if (response.status === 304) return;
         if (!response.ok) throw new Error('Failed to load cart');
 
         const cart = await response.json();
         console.log('Cart data received:', cart); // Debug log
-        displayCart(cart);
+        applyCartResponse(cart);
     } catch (error) {
         console.error('Error loading cart:', error);
         emptyCartEl.style.display = 'block';
@@ -114,10 +144,9 @@ async function updateQuantity(itemId, newQuantity) {
     }
 
     try {
-        const response = await fetch(`${API_ENDPOINTS.CART_ITEMS}/${itemId}`, {
+        const response = await fetch(`${API_ENDPOINTS.CART_ITEMS}/${itemId}?quantity=${newQuantity}&delta=true`, {
             method: 'PUT',
-            headers: Auth.getAuthHeaders(),
-            body: JSON.stringify({ quantity: newQuantity })
+            headers: Auth.getAuthHeaders()
         });
 
         if (!response.ok) {
@@ -125,7 +154,7 @@ async function updateQuantity(itemId, newQuantity) {
             throw new Error(error.message || 'Failed to update quantity');
         }
 
-        await loadCart();
+        await applyMutationResponse(await response.json());
         showToast('Cart updated', 'success');
     } catch (error) {
         showToast(error.message, 'error');
@@ -137,14 +166,14 @@ async function removeItem(itemId) {
     if (!confirm('Remove this item from cart?')) return;
 
     try {
-        const response = await fetch(`${API_ENDPOINTS.CART_ITEMS}/${itemId}`, {
+        const response = await fetch(`${API_ENDPOINTS.CART_ITEMS}/${itemId}?delta=true`, {
             method: 'DELETE',
             headers: Auth.getAuthHeaders()
         });
 
         if (!response.ok) throw new Error('Failed to remove item');
 
-        await loadCart();
+        await applyMutationResponse(await response.json());
         showToast('Item removed from cart', 'success');
     } catch (error) {
         showToast(error.message, 'error');
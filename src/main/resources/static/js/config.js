@@ -8,6 +8,8 @@ const API_ENDPOINTS = {
     CATEGORIES: `${API_BASE_URL}/categories`,
     CART: `${API_BASE_URL}/cart`,
     CART_ITEMS: `${API_BASE_URL}/cart/items`,
+    GUEST_CART: `${API_BASE_URL}/cart/guest`,
+    GUEST_CART_ITEMS: `${API_BASE_URL}/cart/guest/items`,
     ORDERS: `${API_BASE_URL}/orders`,
     USERS: `${API_BASE_URL}/users`
 };
@@ -96,14 +96,11 @@ function createProductCard(product) {
 }
 
 async function addToCart(productId) {
-    if (!Auth.isLoggedIn()) {
-        showToast('Please login to add items to cart', 'error');
-        setTimeout(() => window.location.href = 'login.html', 1000);
-        return;
-    }
+    // Signed-out shoppers get a guest cart kept in a cookie; it is merged into their cart at login
+    const url = Auth.isLoggedIn() ? API_ENDPOINTS.CART_ITEMS : API_ENDPOINTS.GUEST_CART_ITEMS;
 
     try {
-        const response = await fetch(API_ENDPOINTS.CART_ITEMS, {
+        const response = await fetch(url, {
             method: 'POST',
             headers: Auth.getAuthHeaders(),
             body: JSON.stringify({
@@ -125,10 +122,10 @@ async function addToCart(productId) {
 }
 
 async function updateCartCount() {
-    if (!Auth.isLoggedIn()) return;
+    const url = Auth.isLoggedIn() ? API_ENDPOINTS.CART : API_ENDPOINTS.GUEST_CART;
 
     try {
-        const response = await fetch(API_ENDPOINTS.CART, {
+        const response = await fetch(url, {
             headers: Auth.getAuthHeaders()
         });
 
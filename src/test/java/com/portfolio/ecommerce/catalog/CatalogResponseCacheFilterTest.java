@@ -0,0 +1,106 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogResponseCacheFilterTest {
+
+    private CatalogResponseCacheFilter filter;
+    private AtomicInteger controllerCalls;
+    private FilterChain chain;
+
+    @BeforeEach
+    void setUp() {
+        filter = new CatalogResponseCacheFilter(1024 * 1024, Duration.ofMinutes(1));
+        controllerCalls = new AtomicInteger();
+        chain = (request, response) -> {
+            controllerCalls.incrementAndGet();
+            response.setContentType("application/json");
+            ((HttpServletResponse) response).setHeader(HttpHeaders.ETAG, "\"categories-1\"");
+            response.getOutputStream().write("[{\"id\":1}]".getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    @Test
+    void testRepeatedAnonymousRead_ServedFromCache() throws Exception {
+        MockHttpServletResponse first = get("/api/categories", null);
+        MockHttpServletResponse second = get("/api/categories", null);
+
+        assertThat(controllerCalls.get()).isEqualTo(1);
+        assertThat(second.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(second.getHeader(HttpHeaders.ETAG)).isEqualTo("\"categories-1\"");
+        assertThat(first.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(second.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Test
+    void testCachedEntry_AnswersIfNoneMatchWith304() throws Exception {
+        get("/api/categories", null);
+
+        MockHttpServletRequest request = request("/api/categories");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"categories-1\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(controllerCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testWrite_InvalidatesEntries() throws Exception {
+        get("/api/categories", null);
+        filter.onCategoryChanged(CategoryChangedEvent.upserted(1L, "Electronics"));
+        get("/api/categories", null);
+
+        assertThat(controllerCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testStockChange_KeepsEntries() throws Exception {
+        get("/api/products", null);
+        filter.onProductChanged(ProductChangedEvent.stockChanged(ProductResponse.builder().id(1L).build()));
+        get("/api/products", null);
+        filter.onProductChanged(ProductChangedEvent.upserted(ProductResponse.builder().id(1L).build()));
+        get("/api/products", null);
+
+        assertThat(controllerCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testAuthenticatedOrUnknownRequests_BypassCache() throws Exception {
+        get("/api/categories", "Bearer token");
+        get("/api/categories", "Bearer token");
+        get("/api/products/search", null);
+        get("/api/products/search", null);
+
+        assertThat(controllerCalls.get()).isEqualTo(4);
+    }
+
+    private MockHttpServletResponse get(String uri, String authorization) throws Exception {
+        MockHttpServletRequest request = request(uri);
+        if (authorization != null) {
+            request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private MockHttpServletRequest request(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+}
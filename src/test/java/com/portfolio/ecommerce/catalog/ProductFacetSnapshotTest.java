@@ -0,0 +1,93 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.dto.ProductFacetResponse;
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFacetSnapshotTest {
+
+    private ProductFacetSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new ProductFacetSnapshot();
+        snapshot.rebuild(List.of(
+            product(1L, "10.00", 5, 1L, "Electronics", true),
+            product(2L, "45.00", 0, 1L, "Electronics", true),
+            product(3L, "90.00", 3, 2L, "Books", true),
+            product(4L, "20.00", 9, 2L, "Books", false)
+        ));
+    }
+
+    @Test
+    void testFacets_CountsActiveProducts() {
+        ProductFacetResponse facets = snapshot.facets(null, null, null, false, 4);
+
+        assertThat(facets.getTotal()).isEqualTo(3L);
+        assertThat(facets.getCategories())
+            .extracting(ProductFacetResponse.CategoryFacet::getCount).containsExactly(2L, 1L);
+        assertThat(facets.getPriceHistogram()).hasSize(4);
+        assertThat(facets.getPriceHistogram())
+            .extracting(ProductFacetResponse.PriceBucket::getCount).containsExactly(1L, 1L, 0L, 1L);
+    }
+
+    @Test
+    void testFacets_CategoryCountsIgnoreCategoryFilter() {
+        ProductFacetResponse facets = snapshot.facets(2L, null, null, false, 4);
+
+        assertThat(facets.getTotal()).isEqualTo(1L);
+        assertThat(facets.getCategories())
+            .extracting(ProductFacetResponse.CategoryFacet::getCategoryId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testFacets_AppliesPriceAndStockFilters() {
+        ProductFacetResponse facets = snapshot.facets(null, new BigDecimal("5"), new BigDecimal("50"), true, 5);
+
+        assertThat(facets.getTotal()).isEqualTo(1L);
+        assertThat(facets.getPriceHistogram().get(0).getFrom()).isEqualByComparingTo("5");
+    }
+
+    @Test
+    void testOnProductChanged_UpdatesAndRemovesRows() {
+        snapshot.onProductChanged(ProductChangedEvent.deleted(1L));
+        snapshot.onProductChanged(ProductChangedEvent.upserted(product(2L, "45.00", 7, 2L, "Books", true)));
+
+        ProductFacetResponse facets = snapshot.facets(null, null, null, true, 2);
+
+        assertThat(facets.getTotal()).isEqualTo(2L);
+        assertThat(facets.getCategories())
+            .extracting(ProductFacetResponse.CategoryFacet::getCategoryId).containsExactly(2L);
+    }
+
+    @Test
+    void testOnCategoryChanged_RenamesCategoryFacet() {
+        snapshot.onCategoryChanged(CategoryChangedEvent.upserted(2L, "Novels"));
+
+        ProductFacetResponse facets = snapshot.facets(null, null, null, false, 2);
+
+        assertThat(facets.getCategories())
+            .extracting(ProductFacetResponse.CategoryFacet::getCategoryName).containsExactly("Electronics", "Novels");
+    }
+
+    private ProductResponse product(Long id, String price, int stock, Long categoryId, String categoryName,
+                                    boolean active) {
+        return ProductResponse.builder()
+            .id(id)
+            .name("Product " + id)
+            .price(new BigDecimal(price))
+            .stockQuantity(stock)
+            .categoryId(categoryId)
+            .categoryName(categoryName)
+            .active(active)
+            .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.portfolio.ecommerce.catalog;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.rebuild(List.of(
+            product(1L, "Gaming Laptop", "Fast laptop for games", "LAP-001", true),
+            product(2L, "Office Laptop", "Light and quiet", "LAP-002", true),
+            product(3L, "Wireless Mouse", "Ergonomic gaming mouse", "MOU-001", true),
+            product(4L, "Retired Laptop", "No longer sold", "LAP-999", false)
+        ));
+    }
+
+    @Test
+    void testSearch_PrefixMatchesWholeTerms() {
+        List<ProductResponse> results = index.search("lap", ProductSearchIndex.Operator.AND, 10);
+
+        assertThat(results).extracting(ProductResponse::getId).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void testSearch_AndRequiresEveryTerm() {
+        List<ProductResponse> results = index.search("gaming laptop", ProductSearchIndex.Operator.AND, 10);
+
+        assertThat(results).extracting(ProductResponse::getId).containsExactly(1L);
+    }
+
+    @Test
+    void testSearch_OrRanksBestMatchFirst() {
+        List<ProductResponse> results = index.search("gaming laptop", ProductSearchIndex.Operator.OR, 10);
+
+        assertThat(results).extracting(ProductResponse::getId).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(results.get(0).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void testSearch_RespectsLimit() {
+        assertThat(index.search("laptop", ProductSearchIndex.Operator.OR, 1)).hasSize(1);
+    }
+
+    @Test
+    void testIndexAndRemove_UpdateResults() {
+        index.index(product(2L, "Office Chair", "Light and quiet", "CHR-002", true));
+        index.remove(1L);
+
+        assertThat(index.search("laptop", ProductSearchIndex.Operator.AND, 10)).isEmpty();
+        assertThat(index.search("chair", ProductSearchIndex.Operator.AND, 10))
+            .extracting(ProductResponse::getId).containsExactly(2L);
+    }
+
+    @Test
+    void testOnCategoryChanged_RenamesCategoryOfHits() {
+        ProductResponse laptop = product(1L, "Gaming Laptop", "Fast laptop for games", "LAP-001", true);
+        laptop.setCategoryId(1L);
+        laptop.setCategoryName("Electronics");
+        index.index(laptop);
+
+        index.onCategoryChanged(CategoryChangedEvent.upserted(1L, "Computers"));
+
+        assertThat(index.search("gaming laptop", ProductSearchIndex.Operator.AND, 10))
+            .extracting(ProductResponse::getCategoryName).containsExactly("Computers");
+        assertThat(laptop.getCategoryName()).isEqualTo("Electronics");
+    }
+
+    @Test
+    void testIndex_SameTextKeepsRankingAndReturnsNewCopy() {
+        ProductResponse restocked = product(1L, "Gaming Laptop", "Fast laptop for games", "LAP-001", true);
+        restocked.setStockQuantity(3);
+        index.index(restocked);
+
+        assertThat(index.search("laptop", ProductSearchIndex.Operator.OR, 10))
+            .extracting(ProductResponse::getId).containsExactly(1L, 2L);
+        assertThat(index.search("gaming laptop", ProductSearchIndex.Operator.AND, 10))
+            .extracting(ProductResponse::getStockQuantity).containsExactly(3);
+    }
+
+    private ProductResponse product(Long id, String name, String description, String sku, boolean active) {
+        return ProductResponse.builder()
+            .id(id)
+            .name(name)
+            .description(description)
+            .sku(sku)
+            .active(active)
+            .build();
+    }
+}
@@ -0,0 +1,46 @@
+package com.portfolio.ecommerce.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSuggestTrieTest {
+
+    private final ProductSuggestTrie trie = ProductSuggestTrie.build(List.of(
+        new ProductSuggestTrie.Entry(1L, "Gaming Laptop", 5),
+        new ProductSuggestTrie.Entry(2L, "Gaming Mouse", 40),
+        new ProductSuggestTrie.Entry(3L, "Garden Hose", 10),
+        new ProductSuggestTrie.Entry(4L, "Office Laptop", 20)
+    ));
+
+    @Test
+    void testSuggest_RanksByPopularity() {
+        List<ProductSuggestTrie.Entry> results = trie.suggest("ga", 10);
+
+        assertThat(results).extracting(ProductSuggestTrie.Entry::productId).containsExactly(2L, 3L, 1L);
+    }
+
+    @Test
+    void testSuggest_MatchesLaterWords() {
+        List<ProductSuggestTrie.Entry> results = trie.suggest("LAP", 10);
+
+        assertThat(results).extracting(ProductSuggestTrie.Entry::productId).containsExactly(4L, 1L);
+    }
+
+    @Test
+    void testSuggest_TrailingSpaceRequiresWholeWord() {
+        assertThat(trie.suggest("gaming ", 10))
+            .extracting(ProductSuggestTrie.Entry::productId).containsExactly(2L, 1L);
+        assertThat(trie.suggest("gam l", 10))
+            .extracting(ProductSuggestTrie.Entry::productId).isEmpty();
+    }
+
+    @Test
+    void testSuggest_AppliesLimitAndHandlesMisses() {
+        assertThat(trie.suggest("g", 1)).hasSize(1);
+        assertThat(trie.suggest("xyz", 10)).isEmpty();
+        assertThat(trie.suggest("", 10)).isEmpty();
+    }
+}
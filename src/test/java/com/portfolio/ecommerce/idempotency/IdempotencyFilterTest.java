@@ -0,0 +1,231 @@
+package com.portfolio.ecommerce.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolio.ecommerce.repository.IdempotencyKeyJdbcRepository;
+import com.portfolio.ecommerce.security.UserDetailsImpl;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyFilterTest {
+
+    @Mock
+    private IdempotencyKeyJdbcRepository idempotencyKeyJdbcRepository;
+
+    private IdempotencyFilter filter;
+    private AtomicInteger controllerCalls;
+    private FilterChain chain;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        IdempotencyStore store = new IdempotencyStore(idempotencyKeyJdbcRepository, objectMapper,
+            Duration.ofHours(24), 1024 * 1024, Duration.ofMinutes(1), Duration.ofSeconds(10));
+        filter = new IdempotencyFilter(store, objectMapper);
+        controllerCalls = new AtomicInteger();
+        chain = (request, response) -> {
+            int call = controllerCalls.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(201);
+            response.setContentType("application/json");
+            response.getOutputStream().write(("{\"id\":" + call + "}").getBytes(StandardCharsets.UTF_8));
+        };
+        authenticate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testRetry_ReplaysRecordedResponse() throws Exception {
+        when(idempotencyKeyJdbcRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any(), any()))
+            .thenReturn(true);
+
+        MockHttpServletResponse first = post("key-1", "{\"productId\":1}");
+        MockHttpServletResponse second = post("key-1", "{\"productId\":1}");
+
+        assertThat(controllerCalls.get()).isEqualTo(1);
+        assertThat(second.getStatus()).isEqualTo(201);
+        assertThat(second.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(second.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED)).isEqualTo("true");
+        verify(idempotencyKeyJdbcRepository).complete(eq(1L), eq("key-1"), eq(201), anyString(), anyString(), any());
+    }
+
+    @Test
+    void testKeyReusedForDifferentBody_Rejected() throws Exception {
+        when(idempotencyKeyJdbcRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any(), any()))
+            .thenReturn(true);
+
+        post("key-1", "{\"productId\":1}");
+        MockHttpServletResponse other = post("key-1", "{\"productId\":2}");
+
+        assertThat(other.getStatus()).isEqualTo(422);
+        assertThat(controllerCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testServerError_NotRecordedSoRetryRunsAgain() throws Exception {
+        when(idempotencyKeyJdbcRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any(), any()))
+            .thenReturn(true);
+        FilterChain failing = (request, response) -> {
+            controllerCalls.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(500);
+        };
+
+        filter.doFilter(request("key-1", "{}"), new MockHttpServletResponse(), failing);
+        MockHttpServletResponse retry = post("key-1", "{}");
+
+        assertThat(controllerCalls.get()).isEqualTo(2);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        verify(idempotencyKeyJdbcRepository).release(1L, "key-1");
+        verify(idempotencyKeyJdbcRepository, never()).complete(anyLong(), anyString(), eq(500), any(), any(), any());
+    }
+
+    @Test
+    void testConcurrentDuplicate_WaitsForTheOriginal() throws Exception {
+        when(idempotencyKeyJdbcRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any(), any()))
+            .thenReturn(true);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (request, response) -> {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            chain.doFilter(request, response);
+        };
+
+        Thread original = new Thread(() -> {
+            authenticate();
+            try {
+                filter.doFilter(request("key-1", "{}"), new MockHttpServletResponse(), slow);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        original.start();
+        assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        AtomicReference<MockHttpServletResponse> duplicate = new AtomicReference<>();
+        Thread retry = new Thread(() -> {
+            authenticate();
+            try {
+                duplicate.set(post("key-1", "{}"));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        retry.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (retry.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        original.join();
+        retry.join();
+
+        assertThat(controllerCalls.get()).isEqualTo(1);
+        assertThat(duplicate.get().getStatus()).isEqualTo(201);
+        assertThat(duplicate.get().getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED)).isEqualTo("true");
+        verify(idempotencyKeyJdbcRepository, times(1))
+            .claim(anyLong(), anyString(), anyString(), any(), any(), any());
+        verify(idempotencyKeyJdbcRepository, never()).find(anyLong(), anyString(), any());
+    }
+
+    @Test
+    void testNonBlockingRead_GetsWholeBodyThroughReadListener() throws Exception {
+        when(idempotencyKeyJdbcRepository.claim(eq(1L), eq("key-1"), anyString(), any(), any(), any()))
+            .thenReturn(true);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        AtomicInteger allDataRead = new AtomicInteger();
+        FilterChain nonBlocking = (request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (in.isReady() && !in.isFinished()) {
+                        received.write(in.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.incrementAndGet();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throw new IllegalStateException(throwable);
+                }
+            });
+            ((HttpServletResponse) response).setStatus(201);
+        };
+
+        filter.doFilter(request("key-1", "{\"productId\":1}"), new MockHttpServletResponse(), nonBlocking);
+
+        assertThat(received.toString(StandardCharsets.UTF_8)).isEqualTo("{\"productId\":1}");
+        assertThat(allDataRead.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testRequestWithoutKey_PassesThrough() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/orders");
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(controllerCalls.get()).isEqualTo(2);
+        verifyNoInteractions(idempotencyKeyJdbcRepository);
+    }
+
+    private MockHttpServletResponse post(String key, String body) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(key, body), response, chain);
+        return response;
+    }
+
+    private MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/cart/items");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static void authenticate() {
+        UserDetailsImpl user = new UserDetailsImpl(1L, "alice", "alice@example.com", "secret", List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
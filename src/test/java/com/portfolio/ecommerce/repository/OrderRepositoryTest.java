@@ -0,0 +1,70 @@
+package com.portfolio.ecommerce.repository;
+
+import com.portfolio.ecommerce.model.Order;
+import com.portfolio.ecommerce.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class OrderRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = User.builder()
+            .username("alice")
+            .email("alice@example.com")
+            .password("secret")
+            .active(true)
+            .createdAt(LocalDateTime.now())
+            .updatedAt(LocalDateTime.now())
+            .build();
+        entityManager.persist(user);
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(Order.builder()
+                .user(user)
+                .subtotal(new BigDecimal("10.00"))
+                .tax(new BigDecimal("1.00"))
+                .totalPrice(new BigDecimal("11.00"))
+                .build());
+        }
+        entityManager.flush();
+        // Cursors come from rows read back, whose timestamps the database may have rounded
+        entityManager.clear();
+    }
+
+    @Test
+    void testFindByUserIdOrderByOrderDateDesc_SeeksPastCursor() {
+        List<Order> firstPage = orderRepository.findByUserIdOrderByOrderDateDesc(
+            user.getId(), null, 0L, PageRequest.of(0, 2));
+
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage.get(0).getId()).isGreaterThan(firstPage.get(1).getId());
+
+        Order last = firstPage.get(1);
+        List<Order> secondPage = orderRepository.findByUserIdOrderByOrderDateDesc(
+            user.getId(), last.getOrderDate(), last.getId(), PageRequest.of(0, 2));
+
+        assertThat(secondPage).hasSize(1);
+        assertThat(secondPage.get(0).getId()).isLessThan(last.getId());
+    }
+}
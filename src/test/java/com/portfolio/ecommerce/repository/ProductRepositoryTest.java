@@ -2,11 +2,13 @@ package com.portfolio.ecommerce.repository;
 
 import com.portfolio.ecommerce.model.Category;
 import com.portfolio.ecommerce.model.Product;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
@@ -70,6 +72,17 @@ class ProductRepositoryTest {
         assertThat(products.get(0).getCategory().getName()).isEqualTo("Electronics");
     }
 
+    @Test
+    void testFindActiveWithCategory_FetchesCategory() {
+        entityManager.clear();
+
+        List<Product> products = productRepository.findActiveWithCategory();
+
+        assertThat(products).hasSize(1);
+        assertThat(Hibernate.isInitialized(products.get(0).getCategory())).isTrue();
+        assertThat(products.get(0).getCategory().getName()).isEqualTo("Electronics");
+    }
+
     @Test
     void testFindBySku() {
         Optional<Product> found = productRepository.findBySku("LAP-001");
@@ -99,4 +112,130 @@ class ProductRepositoryTest {
 
         assertThat(exists).isFalse();
     }
+
+    @Test
+    void testFindPageOrderByPrice_SeeksPastCursor() {
+        Product mouse = Product.builder()
+            .name("Mouse")
+            .description("Wireless mouse")
+            .price(new BigDecimal("19.99"))
+            .stockQuantity(50)
+            .sku("MOU-001")
+            .active(true)
+            .category(category)
+            .build();
+        entityManager.persist(mouse);
+        entityManager.flush();
+
+        List<Product> firstPage = productRepository.findFirstPageOrderByPrice(true, null, PageRequest.of(0, 1));
+
+        assertThat(firstPage).extracting(Product::getName).containsExactly("Mouse");
+
+        Product last = firstPage.get(0);
+        List<Product> secondPage = productRepository.findPageOrderByPrice(
+            true, null, last.getPrice(), last.getId(), PageRequest.of(0, 1));
+
+        assertThat(secondPage).extracting(Product::getName).containsExactly("Laptop");
+    }
+
+    @Test
+    void testFindCategoryPageOrderByPrice_WalksPastFirstPage() {
+        Category books = Category.builder()
+            .name("Books")
+            .description("Printed books")
+            .active(true)
+            .build();
+        entityManager.persist(books);
+        entityManager.persist(product("Mouse", "19.99", "MOU-001", true, category));
+        entityManager.persist(product("Cable", "19.99", "CAB-001", true, category));
+        entityManager.persist(product("Old Mouse", "9.99", "MOU-000", false, category));
+        entityManager.persist(product("Novel", "14.99", "BOO-001", true, books));
+        entityManager.flush();
+
+        List<Product> firstPage = productRepository.findFirstCategoryPageOrderByPrice(
+            category.getId(), PageRequest.of(0, 1));
+        Product last = firstPage.get(0);
+        List<Product> secondPage = productRepository.findCategoryPageOrderByPrice(
+            category.getId(), last.getPrice(), last.getId(), PageRequest.of(0, 1));
+        last = secondPage.get(0);
+        List<Product> thirdPage = productRepository.findCategoryPageOrderByPrice(
+            category.getId(), last.getPrice(), last.getId(), PageRequest.of(0, 2));
+
+        // The two 19.99 rows tie on price and are told apart by id, in insert order
+        assertThat(firstPage).extracting(Product::getName).containsExactly("Mouse");
+        assertThat(secondPage).extracting(Product::getName).containsExactly("Cable");
+        assertThat(thirdPage).extracting(Product::getName).containsExactly("Laptop");
+    }
+
+    @Test
+    void testFindPageOrderById_FiltersByKeyword() {
+        List<Product> products = productRepository.findPageOrderById(true, "lap", 0L, PageRequest.of(0, 10));
+
+        assertThat(products).hasSize(1);
+        assertThat(products.get(0).getSku()).isEqualTo("LAP-001");
+    }
+
+    @Test
+    void testFindCategoryPageOrderById_SkipsOtherCategoriesAndInactiveProducts() {
+        Category books = Category.builder()
+            .name("Books")
+            .description("Printed books")
+            .active(true)
+            .build();
+        entityManager.persist(books);
+        entityManager.persist(product("Novel", "14.99", "BOO-001", true, books));
+        entityManager.persist(product("Old Mouse", "9.99", "MOU-000", false, category));
+        entityManager.flush();
+
+        List<Product> products = productRepository.findCategoryPageOrderById(category.getId(), 0L,
+            PageRequest.of(0, 10));
+
+        assertThat(products).extracting(Product::getSku).containsExactly("LAP-001");
+    }
+
+    @Test
+    void testSummarizeVersions_ChangesWhenAProductIsUpdated() {
+        VersionSummary before = productRepository.summarizeVersions(true, category.getId());
+
+        product.setPrice(new BigDecimal("899.99"));
+        entityManager.flush();
+        VersionSummary after = productRepository.summarizeVersions(true, category.getId());
+
+        assertThat(before.getRowCount()).isEqualTo(1L);
+        assertThat(before.getLastUpdated()).isNotNull();
+        assertThat(after.getRowCount()).isEqualTo(1L);
+        assertThat(after.getVersionSum()).isEqualTo(before.getVersionSum() + 1);
+    }
+
+    @Test
+    void testAdjustProductCount_MovesCategoryVersion() {
+        VersionSummary before = categoryRepository.summarizeVersions(false);
+        categoryRepository.adjustProductCount(category.getId(), 1);
+        entityManager.clear();
+        VersionSummary after = categoryRepository.summarizeVersions(false);
+
+        assertThat(after.getVersionSum()).isEqualTo(before.getVersionSum() + 1);
+        assertThat(categoryRepository.findById(category.getId()).orElseThrow().getProductCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testRecountProducts_AlignsDenormalizedCount() {
+        categoryRepository.adjustProductCount(category.getId(), 5);
+        categoryRepository.recountProducts();
+        entityManager.clear();
+
+        assertThat(categoryRepository.findById(category.getId()).orElseThrow().getProductCount()).isEqualTo(1);
+    }
+
+    private Product product(String name, String price, String sku, boolean active, Category category) {
+        return Product.builder()
+            .name(name)
+            .description(name)
+            .price(new BigDecimal(price))
+            .stockQuantity(10)
+            .sku(sku)
+            .active(active)
+            .category(category)
+            .build();
+    }
 }
@@ -0,0 +1,150 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.dto.OrderResponse;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.model.Cart;
+import com.portfolio.ecommerce.repository.CartRepository;
+import com.portfolio.ecommerce.repository.CheckoutRequestJdbcRepository;
+import com.portfolio.ecommerce.repository.CheckoutRequestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncCheckoutServiceTest {
+
+    @Mock
+    private CheckoutRequestJdbcRepository checkoutRequestJdbcRepository;
+
+    @Mock
+    private CheckoutRequestRepository checkoutRequestRepository;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private AsyncCheckoutService asyncCheckoutService;
+
+    private final SimpleTransactionStatus transactionStatus = new SimpleTransactionStatus();
+
+    @BeforeEach
+    void setUp() {
+        asyncCheckoutService = new AsyncCheckoutService(checkoutRequestJdbcRepository, checkoutRequestRepository,
+            cartRepository, orderService, transactionTemplate, 1, 10, 20, Duration.ofMinutes(5), 5000);
+    }
+
+    @Test
+    void testSubmit_RejectsEmptyCart() {
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(Cart.builder().id(1L).build()));
+
+        assertThatThrownBy(() -> asyncCheckoutService.submit(1L))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("empty cart");
+
+        verifyNoInteractions(checkoutRequestJdbcRepository);
+    }
+
+    @Test
+    void testProcessBatch_CompletesClaimedRequest() {
+        UUID token = UUID.randomUUID();
+        when(checkoutRequestJdbcRepository.claim(eq(List.of(token)), any()))
+            .thenReturn(List.of(new CheckoutRequestJdbcRepository.Claimed(token, 1L)));
+        when(transactionTemplate.execute(any()))
+            .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(transactionStatus));
+        when(checkoutRequestJdbcRepository.start(eq(token), any())).thenReturn(true);
+        when(orderService.createOrderFromCart(1L)).thenReturn(OrderResponse.builder().id(7L).build());
+        when(checkoutRequestJdbcRepository.complete(eq(token), eq(7L), any())).thenReturn(true);
+
+        asyncCheckoutService.processBatch(List.of(token));
+
+        verify(checkoutRequestJdbcRepository, never()).fail(any(), any(), any());
+        assertThat(transactionStatus.isRollbackOnly()).isFalse();
+    }
+
+    @Test
+    void testProcessBatch_RollsBackOrderOfRequestSettledElsewhere() {
+        UUID token = UUID.randomUUID();
+        when(checkoutRequestJdbcRepository.claim(eq(List.of(token)), any()))
+            .thenReturn(List.of(new CheckoutRequestJdbcRepository.Claimed(token, 1L)));
+        when(checkoutRequestJdbcRepository.start(eq(token), any())).thenReturn(true);
+        when(transactionTemplate.execute(any()))
+            .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(transactionStatus));
+        when(orderService.createOrderFromCart(1L)).thenReturn(OrderResponse.builder().id(7L).build());
+        when(checkoutRequestJdbcRepository.complete(eq(token), eq(7L), any())).thenReturn(false);
+
+        asyncCheckoutService.processBatch(List.of(token));
+
+        assertThat(transactionStatus.isRollbackOnly()).isTrue();
+        verify(checkoutRequestJdbcRepository, never()).fail(any(), any(), any());
+    }
+
+    @Test
+    void testProcessBatch_SkipsRequestRequeuedBeforeItStarted() {
+        UUID token = UUID.randomUUID();
+        when(checkoutRequestJdbcRepository.claim(eq(List.of(token)), any()))
+            .thenReturn(List.of(new CheckoutRequestJdbcRepository.Claimed(token, 1L)));
+        when(checkoutRequestJdbcRepository.start(eq(token), any())).thenReturn(false);
+
+        asyncCheckoutService.processBatch(List.of(token));
+
+        verifyNoInteractions(orderService, transactionTemplate);
+    }
+
+    @Test
+    void testProcessBatch_RecordsFailureAndCarriesOn() {
+        UUID failing = UUID.randomUUID();
+        UUID passing = UUID.randomUUID();
+        when(checkoutRequestJdbcRepository.claim(anyList(), any())).thenReturn(List.of(
+            new CheckoutRequestJdbcRepository.Claimed(failing, 1L),
+            new CheckoutRequestJdbcRepository.Claimed(passing, 2L)));
+        when(transactionTemplate.execute(any()))
+            .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(transactionStatus));
+        when(checkoutRequestJdbcRepository.start(any(), any())).thenReturn(true);
+        when(orderService.createOrderFromCart(1L))
+            .thenThrow(new BadRequestException("Cannot create order from empty cart"));
+        when(orderService.createOrderFromCart(2L)).thenReturn(OrderResponse.builder().id(8L).build());
+        when(checkoutRequestJdbcRepository.complete(eq(passing), eq(8L), any())).thenReturn(true);
+
+        asyncCheckoutService.processBatch(List.of(failing, passing));
+
+        verify(checkoutRequestJdbcRepository).fail(eq(failing), eq("Cannot create order from empty cart"), any());
+        verify(checkoutRequestJdbcRepository, times(2)).start(any(), any());
+    }
+
+    @Test
+    void testProcessBatch_HidesMessageOfUnexpectedFailure() {
+        UUID token = UUID.randomUUID();
+        when(checkoutRequestJdbcRepository.claim(eq(List.of(token)), any()))
+            .thenReturn(List.of(new CheckoutRequestJdbcRepository.Claimed(token, 1L)));
+        when(checkoutRequestJdbcRepository.start(eq(token), any())).thenReturn(true);
+        when(transactionTemplate.execute(any()))
+            .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint \"orders_pkey\""));
+
+        asyncCheckoutService.processBatch(List.of(token));
+
+        verify(checkoutRequestJdbcRepository).fail(eq(token), eq("Checkout could not be completed, please try again"), any());
+    }
+}
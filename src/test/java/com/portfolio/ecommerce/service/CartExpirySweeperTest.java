@@ -0,0 +1,67 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.repository.CartItemJdbcRepository;
+import com.portfolio.ecommerce.repository.JobLeaseJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartExpirySweeperTest {
+
+    @Mock
+    private CartItemJdbcRepository cartItemJdbcRepository;
+
+    @Mock
+    private JobLeaseJdbcRepository jobLeaseJdbcRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CartExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new CartExpirySweeper(cartItemJdbcRepository, jobLeaseJdbcRepository, transactionTemplate,
+            Duration.ofDays(30), 2, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testSweep_SkipsWhenAnotherNodeHoldsTheLease() {
+        when(jobLeaseJdbcRepository.tryAcquire(eq(CartExpirySweeper.LEASE_NAME), anyString(), any()))
+            .thenReturn(false);
+
+        sweeper.sweep();
+
+        verifyNoInteractions(cartItemJdbcRepository, transactionTemplate);
+        verify(jobLeaseJdbcRepository, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    void testSweep_RunsChunksUntilAShortOneAndReleasesTheLease() {
+        when(jobLeaseJdbcRepository.tryAcquire(eq(CartExpirySweeper.LEASE_NAME), anyString(), any()))
+            .thenReturn(true);
+        when(transactionTemplate.execute(any()))
+            .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(cartItemJdbcRepository.expireIdleCarts(any(), eq(2)))
+            .thenReturn(new CartItemJdbcRepository.ExpiredChunk(2, 5))
+            .thenReturn(new CartItemJdbcRepository.ExpiredChunk(1, 3));
+
+        sweeper.sweep();
+
+        verify(cartItemJdbcRepository, times(2)).expireIdleCarts(any(), eq(2));
+        verify(jobLeaseJdbcRepository, times(2)).tryAcquire(eq(CartExpirySweeper.LEASE_NAME), anyString(), any());
+        verify(jobLeaseJdbcRepository).release(eq(CartExpirySweeper.LEASE_NAME), anyString());
+    }
+}
@@ -1,13 +1,18 @@
 package com.portfolio.ecommerce.service;
 
 import com.portfolio.ecommerce.dto.CartItemRequest;
+import com.portfolio.ecommerce.dto.CartItemResponse;
+import com.portfolio.ecommerce.dto.CartPatchRequest;
 import com.portfolio.ecommerce.dto.CartResponse;
+import com.portfolio.ecommerce.dto.ProductLookupResponse;
+import com.portfolio.ecommerce.dto.ProductResponse;
 import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.*;
+import com.portfolio.ecommerce.repository.CartItemJdbcRepository;
+import com.portfolio.ecommerce.repository.CartItemRemovalRepository;
 import com.portfolio.ecommerce.repository.CartItemRepository;
 import com.portfolio.ecommerce.repository.CartRepository;
-import com.portfolio.ecommerce.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,11 +22,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,7 +43,16 @@ class CartServiceTest {
     private CartItemRepository cartItemRepository;
 
     @Mock
-    private ProductRepository productRepository;
+    private CartItemJdbcRepository cartItemJdbcRepository;
+
+    @Mock
+    private CartItemRemovalRepository cartItemRemovalRepository;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private StockReservationService stockReservationService;
 
     @InjectMocks
     private CartService cartService;
@@ -42,6 +60,7 @@ class CartServiceTest {
     private User user;
     private Cart cart;
     private Product product;
+    private ProductResponse productResponse;
     private CartItem cartItem;
     private CartItemRequest cartItemRequest;
 
@@ -61,11 +80,20 @@ class CartServiceTest {
             .active(true)
             .build();
 
+        productResponse = ProductResponse.builder()
+            .id(1L)
+            .name("Laptop")
+            .price(new BigDecimal("999.99"))
+            .stockQuantity(10)
+            .active(true)
+            .build();
+
         cart = Cart.builder()
             .id(1L)
             .user(user)
             .items(new ArrayList<>())
             .totalPrice(BigDecimal.ZERO)
+            .version(0L)
             .build();
 
         cartItem = CartItem.builder()
@@ -95,104 +123,263 @@ class CartServiceTest {
     }
 
     @Test
-    void testGetCartByUserId_NotFound() {
+    void testGetCartByUserId_NoCartYetReadsAsEmpty() {
         when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> cartService.getCartByUserId(1L))
-            .isInstanceOf(ResourceNotFoundException.class)
-            .hasMessageContaining("Cart not found");
+        CartResponse result = cartService.getCartByUserId(1L);
 
+        assertThat(result.getItems()).isEmpty();
+        assertThat(result.getVersion()).isZero();
         verify(cartRepository).findByUserIdWithItems(1L);
     }
 
     @Test
     void testAddItemToCart_Success() {
+        when(productService.getProductById(1L)).thenReturn(productResponse);
+        when(cartItemJdbcRepository.upsertLine(1L, 1L, 1, productResponse.getPrice(), 10))
+            .thenReturn(Optional.of(new CartItemJdbcRepository.UpsertedLine(1L, 1, true, productResponse.getPrice())));
         when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(cartItemRepository.findByCartIdAndProductId(1L, 1L)).thenReturn(Optional.empty());
-        when(cartItemRepository.save(any(CartItem.class))).thenReturn(cartItem);
-        when(cartRepository.save(any(Cart.class))).thenReturn(cart);
 
-        CartResponse result = cartService.addItemToCart(1L, cartItemRequest);
+        CartResponse result = cartService.addItemToCart(1L, cartItemRequest, false);
 
         assertThat(result).isNotNull();
-        verify(cartItemRepository).save(any(CartItem.class));
-        verify(cartRepository).save(any(Cart.class));
+        verify(cartItemJdbcRepository).upsertLine(1L, 1L, 1, productResponse.getPrice(), 10);
+        verify(stockReservationService).reserve(1L, 1L, 1, false);
     }
 
     @Test
-    void testAddItemToCart_ProductNotFound() {
+    void testAddItemToCart_CreatesCartOnFirstAdd() {
+        when(productService.getProductById(1L)).thenReturn(productResponse);
+        when(cartItemJdbcRepository.upsertLine(1L, 1L, 1, productResponse.getPrice(), 10))
+            .thenReturn(Optional.empty())
+            .thenReturn(Optional.of(new CartItemJdbcRepository.UpsertedLine(1L, 1, true, productResponse.getPrice())));
+        when(cartRepository.existsByUserId(1L)).thenReturn(false);
         when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest))
+        CartResponse result = cartService.addItemToCart(1L, cartItemRequest, false);
+
+        assertThat(result).isNotNull();
+        verify(cartItemJdbcRepository).insertCartIfMissing(1L);
+    }
+
+    @Test
+    void testAddItemToCart_MergedQuantityExceedsStock() {
+        when(productService.getProductById(1L)).thenReturn(productResponse);
+        when(cartItemJdbcRepository.upsertLine(1L, 1L, 1, productResponse.getPrice(), 10))
+            .thenReturn(Optional.empty());
+        when(cartRepository.existsByUserId(1L)).thenReturn(true);
+
+        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest, false))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("Insufficient stock");
+    }
+
+    @Test
+    void testAddItemToCart_ProductNotFound() {
+        when(productService.getProductById(1L))
+            .thenThrow(new ResourceNotFoundException("Product not found with id: 1"));
+
+        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest, false))
             .isInstanceOf(ResourceNotFoundException.class)
             .hasMessageContaining("Product not found");
 
-        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verifyNoInteractions(cartItemJdbcRepository);
     }
 
     @Test
     void testAddItemToCart_InsufficientStock() {
-        product.setStockQuantity(0);
-        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        productResponse.setStockQuantity(0);
+        when(productService.getProductById(1L)).thenReturn(productResponse);
 
-        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest))
+        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest, false))
             .isInstanceOf(BadRequestException.class)
             .hasMessageContaining("Insufficient stock");
 
-        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verifyNoInteractions(cartItemJdbcRepository);
     }
 
     @Test
     void testAddItemToCart_ProductNotActive() {
-        product.setActive(false);
-        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        productResponse.setActive(false);
+        when(productService.getProductById(1L)).thenReturn(productResponse);
 
-        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest))
+        assertThatThrownBy(() -> cartService.addItemToCart(1L, cartItemRequest, false))
             .isInstanceOf(BadRequestException.class)
             .hasMessageContaining("not available");
 
-        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verifyNoInteractions(cartItemJdbcRepository);
     }
 
     @Test
-    void testUpdateCartItem_Success() {
-        cart.getItems().add(cartItem);
-        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
+    void testUpdateCartItem_MovesTotalsByTheLineDelta() {
+        cart.setTotalPrice(product.getPrice());
+        cart.setItemCount(1);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
         when(cartItemRepository.findById(1L)).thenReturn(Optional.of(cartItem));
+        when(productService.getProductById(1L)).thenReturn(productResponse);
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(cartItem);
-        when(cartRepository.save(any(Cart.class))).thenReturn(cart);
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
 
-        CartResponse result = cartService.updateCartItem(1L, 1L, 2);
+        CartResponse result = cartService.updateCartItem(1L, 1L, 2, false);
 
-        assertThat(result).isNotNull();
+        assertThat(result.getTotalPrice()).isEqualByComparingTo("1999.98");
+        assertThat(result.getTotalItems()).isEqualTo(1);
         verify(cartItemRepository).save(any(CartItem.class));
+        verify(cartRepository, never()).findByUserIdWithItems(1L);
     }
 
     @Test
     void testRemoveItemFromCart_Success() {
-        cart.getItems().add(cartItem);
-        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
+        cart.setTotalPrice(product.getPrice());
+        cart.setItemCount(1);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
         when(cartItemRepository.findById(1L)).thenReturn(Optional.of(cartItem));
-        when(cartRepository.save(any(Cart.class))).thenReturn(cart);
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
 
-        CartResponse result = cartService.removeItemFromCart(1L, 1L);
+        CartResponse result = cartService.removeItemFromCart(1L, 1L, false);
 
-        assertThat(result).isNotNull();
+        assertThat(result.getTotalPrice()).isEqualByComparingTo("0");
+        assertThat(result.getTotalItems()).isZero();
         verify(cartItemRepository).delete(cartItem);
     }
 
     @Test
     void testClearCart_Success() {
-        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
-        when(cartRepository.save(any(Cart.class))).thenReturn(cart);
+        cart.setTotalPrice(product.getPrice());
+        cart.setItemCount(1);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
 
         cartService.clearCart(1L);
 
+        assertThat(cart.getItemCount()).isZero();
         verify(cartItemRepository).deleteByCartId(1L);
-        verify(cartRepository).save(any(Cart.class));
+        verify(cartRepository).saveAndFlush(any(Cart.class));
+    }
+
+    @Test
+    void testPatchCart_FoldsOperationsAndChecksStockOnce() {
+        cart.getItems().add(cartItem);
+        cart.setTotalPrice(product.getPrice());
+        cart.setItemCount(1);
+        ProductResponse mouse = ProductResponse.builder()
+            .id(2L)
+            .name("Mouse")
+            .price(new BigDecimal("20.00"))
+            .stockQuantity(5)
+            .active(true)
+            .build();
+        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
+        when(productService.getProductsByIds(List.of(1L, 2L))).thenReturn(List.of(
+            new ProductLookupResponse(1L, true, productResponse), new ProductLookupResponse(2L, true, mouse)));
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
+        when(productService.getProductById(1L)).thenReturn(productResponse);
+        when(cartItemJdbcRepository.insertLines(eq(1L), eq(1L), any())).thenReturn(Map.of(2L, 7L));
+
+        CartResponse result = cartService.patchCart(1L, patch(
+            new CartPatchRequest.Operation(CartPatchRequest.OperationType.SET_QUANTITY, 1L, 3),
+            new CartPatchRequest.Operation(CartPatchRequest.OperationType.ADD, 2L, 1),
+            new CartPatchRequest.Operation(CartPatchRequest.OperationType.ADD, 2L, 1)), false);
+
+        assertThat(result.getTotalPrice()).isEqualByComparingTo("3039.97");
+        assertThat(result.getTotalItems()).isEqualTo(2);
+        assertThat(result.getItems()).extracting(CartItemResponse::getId).containsExactly(1L, 7L);
+        verify(cartItemJdbcRepository).insertLines(1L, 1L,
+            List.of(new CartItemJdbcRepository.NewLine(2L, 2, new BigDecimal("20.00"))));
+    }
+
+    @Test
+    void testPatchCart_InsufficientStockWritesNothing() {
+        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
+        when(productService.getProductsByIds(List.of(1L)))
+            .thenReturn(List.of(new ProductLookupResponse(1L, true, productResponse)));
+
+        assertThatThrownBy(() -> cartService.patchCart(1L, patch(
+            new CartPatchRequest.Operation(CartPatchRequest.OperationType.ADD, 1L, 11)), false))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("Insufficient stock");
+
+        verify(cartRepository, never()).saveAndFlush(any(Cart.class));
+        verifyNoInteractions(cartItemJdbcRepository);
+    }
+
+    @Test
+    void testGetCartChanges_ReturnsChangedLinesAndRemovals() {
+        cart.setVersion(5L);
+        cartItem.setCartVersion(4L);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findByCartIdAndCartVersionGreaterThan(1L, 3L)).thenReturn(List.of(cartItem));
+        when(cartItemRemovalRepository.findItemIdsRemovedSince(1L, 3L)).thenReturn(List.of(9L));
+        when(productService.getProductById(1L)).thenReturn(productResponse);
+
+        CartResponse result = cartService.getCartChanges(1L, 3L);
+
+        assertThat(result.getDelta()).isTrue();
+        assertThat(result.getVersion()).isEqualTo(5L);
+        assertThat(result.getItems()).extracting(CartItemResponse::getId).containsExactly(1L);
+        assertThat(result.getRemovedItemIds()).containsExactly(9L);
+    }
+
+    @Test
+    void testGetCartChanges_BeforeClearReturnsWholeCart() {
+        cart.setVersion(5L);
+        cart.setClearedVersion(4L);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+
+        CartResponse result = cartService.getCartChanges(1L, 3L);
+
+        assertThat(result.getDelta()).isFalse();
+        verifyNoInteractions(cartItemRemovalRepository);
+    }
+
+    @Test
+    void testRemoveItemFromCart_DeltaLeavesTombstone() {
+        cart.setTotalPrice(product.getPrice());
+        cart.setItemCount(1);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findById(1L)).thenReturn(Optional.of(cartItem));
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
+
+        CartResponse result = cartService.removeItemFromCart(1L, 1L, true);
+
+        assertThat(result.getDelta()).isTrue();
+        assertThat(result.getItems()).isEmpty();
+        assertThat(result.getRemovedItemIds()).containsExactly(1L);
+        verify(cartItemJdbcRepository).recordRemovals(1L, 1L, List.of(1L));
+    }
+
+    @Test
+    void testMergeGuestCart_TrimsToStockAndSkipsUnavailableProducts() {
+        when(cartRepository.findByUserIdWithItems(1L)).thenReturn(Optional.of(cart));
+        when(productService.getProductsByIds(List.of(1L, 2L))).thenReturn(List.of(
+            new ProductLookupResponse(1L, true, productResponse), new ProductLookupResponse(2L, false, null)));
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
+        when(cartItemJdbcRepository.insertLines(eq(1L), eq(1L), any())).thenReturn(Map.of(1L, 7L));
+        // Two of the ten in stock are held by another shopper
+        when(stockReservationService.availableToSell(1L, List.of(1L, 2L))).thenReturn(Map.of(1L, 8));
+
+        Map<Long, Integer> guestLines = new LinkedHashMap<>();
+        guestLines.put(1L, 12);
+        guestLines.put(2L, 1);
+        CartResponse result = cartService.mergeGuestCart(1L, guestLines);
+
+        assertThat(result.getItems()).extracting(CartItemResponse::getQuantity).containsExactly(8);
+        verify(cartItemJdbcRepository).insertLines(1L, 1L,
+            List.of(new CartItemJdbcRepository.NewLine(1L, 8, productResponse.getPrice())));
+        verify(stockReservationService).reserve(1L, 1L, 8, true);
+    }
+
+    @Test
+    void testAddItemToGuestCart_AddsToExistingQuantity() {
+        when(productService.getProductById(1L)).thenReturn(productResponse);
+
+        Map<Long, Integer> lines = cartService.addItemToGuestCart(Map.of(1L, 2), cartItemRequest);
+
+        assertThat(lines).containsEntry(1L, 3);
+        verifyNoInteractions(cartRepository, cartItemRepository, cartItemJdbcRepository);
+    }
+
+    private static CartPatchRequest patch(CartPatchRequest.Operation... operations) {
+        return CartPatchRequest.builder().operations(List.of(operations)).build();
     }
 }
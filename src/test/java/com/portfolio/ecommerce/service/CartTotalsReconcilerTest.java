@@ -0,0 +1,54 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.repository.CartItemJdbcRepository;
+import com.portfolio.ecommerce.repository.JobLeaseJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartTotalsReconcilerTest {
+
+    @Mock
+    private CartItemJdbcRepository cartItemJdbcRepository;
+
+    @Mock
+    private JobLeaseJdbcRepository jobLeaseJdbcRepository;
+
+    private CartTotalsReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        reconciler = new CartTotalsReconciler(cartItemJdbcRepository, jobLeaseJdbcRepository, 3_600_000);
+    }
+
+    @Test
+    void testReconcile_SkipsWhenItRanWithinTheInterval() {
+        when(jobLeaseJdbcRepository.tryAcquire(eq(CartTotalsReconciler.LEASE_NAME), anyString(), any()))
+            .thenReturn(false);
+
+        reconciler.reconcileTotals();
+
+        verifyNoInteractions(cartItemJdbcRepository);
+    }
+
+    @Test
+    void testReconcile_HoldsTheLeaseForTheWholeInterval() {
+        when(jobLeaseJdbcRepository.tryAcquire(eq(CartTotalsReconciler.LEASE_NAME), anyString(), eq(Duration.ofHours(1))))
+            .thenReturn(true);
+
+        reconciler.reconcileTotals();
+
+        verify(cartItemJdbcRepository).reconcileTotals(any());
+        verify(jobLeaseJdbcRepository, never()).release(anyString(), anyString());
+    }
+}
@@ -2,16 +2,20 @@ package com.portfolio.ecommerce.service;
 
 import com.portfolio.ecommerce.dto.CategoryRequest;
 import com.portfolio.ecommerce.dto.CategoryResponse;
+import com.portfolio.ecommerce.event.CategoryChangedEvent;
 import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.Category;
 import com.portfolio.ecommerce.repository.CategoryRepository;
+import com.portfolio.ecommerce.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Arrays;
 import java.util.List;
@@ -29,6 +33,12 @@ class CategoryServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CategoryService categoryService;
 
@@ -127,6 +137,10 @@ class CategoryServiceTest {
 
         assertThat(result).isNotNull();
         verify(categoryRepository).save(any(Category.class));
+        ArgumentCaptor<CategoryChangedEvent> event = ArgumentCaptor.forClass(CategoryChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getCategoryId()).isEqualTo(1L);
+        assertThat(event.getValue().getName()).isEqualTo("Electronics");
     }
 
     @Test
@@ -138,6 +152,18 @@ class CategoryServiceTest {
         verify(categoryRepository).delete(category);
     }
 
+    @Test
+    void testDeleteCategory_WithProducts() {
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(category));
+        when(productRepository.existsByCategoryId(1L)).thenReturn(true);
+
+        assertThatThrownBy(() -> categoryService.deleteCategory(1L))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("existing products");
+
+        verify(categoryRepository, never()).delete(any(Category.class));
+    }
+
     @Test
     void testDeleteCategory_NotFound() {
         when(categoryRepository.findById(1L)).thenReturn(Optional.empty());
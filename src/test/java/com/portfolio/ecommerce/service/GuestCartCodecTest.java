@@ -0,0 +1,54 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GuestCartCodecTest {
+
+    private final GuestCartCodec codec = new GuestCartCodec("test-secret", 3, Duration.ofDays(30));
+
+    @Test
+    void testRoundTripKeepsOrder() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        lines.put(42L, 2);
+        lines.put(7L, 1);
+
+        Map<Long, Integer> decoded = codec.decode(codec.encode(lines));
+
+        assertThat(decoded).containsExactly(Map.entry(42L, 2), Map.entry(7L, 1));
+    }
+
+    @Test
+    void testTamperedTokenReadsAsEmpty() {
+        String original = codec.encode(Map.of(42L, 2));
+        String inflated = codec.encode(Map.of(42L, 200));
+        String forged = inflated.substring(0, inflated.indexOf('.')) + original.substring(original.indexOf('.'));
+
+        assertThat(codec.decode(forged)).isEmpty();
+        assertThat(codec.decode("garbage")).isEmpty();
+        assertThat(codec.decode(null)).isEmpty();
+    }
+
+    @Test
+    void testTokenSignedWithAnotherSecretReadsAsEmpty() {
+        GuestCartCodec other = new GuestCartCodec("other-secret", 3, Duration.ofDays(30));
+
+        assertThat(codec.decode(other.encode(Map.of(42L, 2)))).isEmpty();
+    }
+
+    @Test
+    void testRejectsMoreLinesThanTheLimit() {
+        Map<Long, Integer> lines = Map.of(1L, 1, 2L, 1, 3L, 1, 4L, 1);
+
+        assertThatThrownBy(() -> codec.encode(lines))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("at most 3");
+    }
+}
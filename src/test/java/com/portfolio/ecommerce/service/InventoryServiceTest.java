@@ -0,0 +1,220 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.exception.InsufficientStockException;
+import com.portfolio.ecommerce.repository.ProductJdbcRepository;
+import com.portfolio.ecommerce.repository.ProductStockStripeJdbcRepository;
+import com.portfolio.ecommerce.repository.ProductStockStripeJdbcRepository.Stripes;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository.StripeHold;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceTest {
+
+    @Mock
+    private ProductJdbcRepository productJdbcRepository;
+
+    @Mock
+    private ProductStockStripeJdbcRepository productStockStripeJdbcRepository;
+
+    @Mock
+    private StockReservationJdbcRepository stockReservationJdbcRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private InventoryService inventoryService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDecrementStock_UpdatesInProductIdOrderAndPublishesStockChanges() {
+        when(productJdbcRepository.decrementStock(any(), eq(1L), any(LocalDateTime.class))).thenReturn(List.of());
+        when(productJdbcRepository.findByIds(any())).thenReturn(List.of(
+            ProductResponse.builder().id(2L).sku("MOU-001").stockQuantity(48).build(),
+            ProductResponse.builder().id(7L).sku("LAP-001").stockQuantity(9).build()));
+
+        inventoryService.decrementStock(Map.of(7L, 1, 2L, 2), 1L, Map.of());
+
+        ArgumentCaptor<SortedMap<Long, Integer>> lines = ArgumentCaptor.forClass(SortedMap.class);
+        verify(productJdbcRepository).decrementStock(lines.capture(), eq(1L), any(LocalDateTime.class));
+        assertThat(lines.getValue().keySet()).containsExactly(2L, 7L);
+        ArgumentCaptor<ProductChangedEvent> events = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertThat(events.getAllValues()).allMatch(ProductChangedEvent::isStockOnly);
+    }
+
+    @Test
+    void testDecrementStock_ReportsEveryShortLineNetOfOtherHolds() {
+        when(productJdbcRepository.decrementStock(any(), eq(1L), any(LocalDateTime.class))).thenReturn(List.of(2L, 7L));
+        when(productJdbcRepository.findByIds(any())).thenReturn(List.of(
+            ProductResponse.builder().id(2L).sku("MOU-001").stockQuantity(4).build(),
+            ProductResponse.builder().id(7L).sku("LAP-001").stockQuantity(0).build(),
+            ProductResponse.builder().id(9L).sku("KEY-001").stockQuantity(30).build()));
+        when(stockReservationJdbcRepository.findAvailable(eq(1L), eq(List.of(2L, 7L)), any(LocalDateTime.class)))
+            .thenReturn(Map.of(2L, 1, 7L, 0));
+
+        assertThatThrownBy(() -> inventoryService.decrementStock(Map.of(2L, 3, 7L, 1, 9L, 1), 1L, Map.of()))
+            .isInstanceOf(InsufficientStockException.class)
+            .hasMessageContaining("MOU-001")
+            .hasMessageContaining("LAP-001")
+            .satisfies(ex -> assertThat(((InsufficientStockException) ex).getShortages())
+                .containsExactly(
+                    new InsufficientStockException.Shortage(2L, "MOU-001", 3, 1),
+                    new InsufficientStockException.Shortage(7L, "LAP-001", 1, 0)));
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testDecrementStock_BorrowsAcrossStripesWhenOneRunsDry() {
+        when(productStockStripeJdbcRepository.findStripeCounts(any())).thenReturn(Map.of(5L, 4));
+        when(productStockStripeJdbcRepository.tryTake(eq(5L), anyInt(), eq(3), eq(0))).thenReturn(false);
+        when(productStockStripeJdbcRepository.lockStripes(5L))
+            .thenReturn(new Stripes(new int[] {2, 0, 1, 4}, new int[] {0, 2, 0, 0}));
+        when(productJdbcRepository.findByIds(any())).thenReturn(List.of(
+            ProductResponse.builder().id(5L).sku("CON-001").stockQuantity(9).stockStripes(4).build()));
+
+        inventoryService.decrementStock(Map.of(5L, 3), 1L, Map.of());
+
+        verify(productStockStripeJdbcRepository).setStripes(eq(5L), argThat(stripes ->
+            Arrays.equals(stripes.quantities(), new int[] {1, 1, 1, 1})
+                && Arrays.equals(stripes.held(), new int[] {0, 2, 0, 0})));
+        verify(productJdbcRepository, never()).decrementStock(any(), any(), any(LocalDateTime.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testDecrementStock_ReportsStripeTotalWhenStripedProductIsShort() {
+        when(productStockStripeJdbcRepository.findStripeCounts(any())).thenReturn(Map.of(5L, 2));
+        when(productStockStripeJdbcRepository.tryTake(eq(5L), anyInt(), eq(4), eq(0))).thenReturn(false);
+        when(productStockStripeJdbcRepository.lockStripes(5L))
+            .thenReturn(new Stripes(new int[] {1, 2}, new int[] {0, 3}));
+        when(productJdbcRepository.findByIds(any())).thenReturn(List.of(
+            ProductResponse.builder().id(5L).sku("CON-001").stockQuantity(6).stockStripes(2).build()));
+
+        assertThatThrownBy(() -> inventoryService.decrementStock(Map.of(5L, 4), 1L, Map.of()))
+            .isInstanceOf(InsufficientStockException.class)
+            .satisfies(ex -> assertThat(((InsufficientStockException) ex).getShortages())
+                .containsExactly(new InsufficientStockException.Shortage(5L, "CON-001", 4, 3)));
+
+        verify(productStockStripeJdbcRepository, never()).setStripes(any(), any());
+    }
+
+    @Test
+    void testDecrementStock_TakesHeldUnitsFromTheStripeTheySitOn() {
+        when(productStockStripeJdbcRepository.findStripeCounts(any())).thenReturn(Map.of(5L, 4));
+        when(productStockStripeJdbcRepository.tryTake(5L, 2, 3, 3)).thenReturn(true);
+        when(productJdbcRepository.findByIds(any())).thenReturn(List.of(
+            ProductResponse.builder().id(5L).sku("CON-001").stockQuantity(9).stockStripes(4).build()));
+
+        inventoryService.decrementStock(Map.of(5L, 3), 1L, Map.of(5L, new StripeHold(5L, 2, 3)));
+
+        verify(productStockStripeJdbcRepository, never()).lockStripes(any());
+    }
+
+    @Test
+    void testDecrementStock_FoldsOwnAndExpiredHoldsBackBeforeBorrowing() {
+        when(productStockStripeJdbcRepository.findStripeCounts(any())).thenReturn(Map.of(5L, 3));
+        when(productStockStripeJdbcRepository.tryTake(5L, 1, 4, 2)).thenReturn(false);
+        when(productStockStripeJdbcRepository.lockStripes(5L))
+            .thenReturn(new Stripes(new int[] {0, 1, 0}, new int[] {1, 2, 0}));
+        when(stockReservationJdbcRepository.takeExpiredOnStripes(eq(5L), any(LocalDateTime.class)))
+            .thenReturn(List.of(new StripeHold(5L, 0, 1)));
+        when(productJdbcRepository.findByIds(any())).thenReturn(List.of(
+            ProductResponse.builder().id(5L).sku("CON-001").stockQuantity(4).stockStripes(3).build()));
+
+        inventoryService.decrementStock(Map.of(5L, 4), 1L, Map.of(5L, new StripeHold(5L, 1, 2)));
+
+        verify(productStockStripeJdbcRepository).setStripes(eq(5L), argThat(stripes ->
+            Arrays.equals(stripes.quantities(), new int[] {0, 0, 0})
+                && Arrays.equals(stripes.held(), new int[] {0, 0, 0})));
+    }
+
+    @Test
+    void testHoldOnStripes_MovesUnitsToHeldOnThePreviousHoldsStripe() {
+        when(productStockStripeJdbcRepository.findStripeCounts(List.of(5L))).thenReturn(Map.of(5L, 4));
+        when(productStockStripeJdbcRepository.tryHold(5L, 1, 2, 1)).thenReturn(true);
+
+        StripeHold hold = inventoryService.holdOnStripes(5L, 2, false, new StripeHold(5L, 1, 1));
+
+        assertThat(hold).isEqualTo(new StripeHold(5L, 1, 2));
+        verify(productStockStripeJdbcRepository, never()).lockStripes(any());
+    }
+
+    @Test
+    void testHoldOnStripes_ThrowsWhenUnheldStockIsShort() {
+        when(productStockStripeJdbcRepository.findStripeCounts(List.of(5L))).thenReturn(Map.of(5L, 2));
+        when(productStockStripeJdbcRepository.tryHold(eq(5L), anyInt(), eq(2), eq(0))).thenReturn(false);
+        when(productStockStripeJdbcRepository.lockStripes(5L))
+            .thenReturn(new Stripes(new int[] {1, 0}, new int[] {0, 4}));
+
+        assertThatThrownBy(() -> inventoryService.holdOnStripes(5L, 2, false, null))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("Available: 1");
+
+        verify(productStockStripeJdbcRepository, never()).setStripes(any(), any());
+    }
+
+    @Test
+    void testHoldOnStripes_HoldsWhatIsLeftWhenPartial() {
+        when(productStockStripeJdbcRepository.findStripeCounts(List.of(5L))).thenReturn(Map.of(5L, 2));
+        when(productStockStripeJdbcRepository.tryHold(eq(5L), anyInt(), eq(2), eq(0))).thenReturn(false);
+        when(productStockStripeJdbcRepository.lockStripes(5L))
+            .thenReturn(new Stripes(new int[] {1, 0}, new int[] {0, 4}));
+
+        StripeHold hold = inventoryService.holdOnStripes(5L, 2, true, null);
+
+        assertThat(hold.quantity()).isEqualTo(1);
+        verify(productStockStripeJdbcRepository).setStripes(eq(5L), argThat(stripes ->
+            Arrays.equals(stripes.quantities(), new int[] {0, 0})
+                && Arrays.stream(stripes.held()).sum() == 5));
+    }
+
+    @Test
+    void testSetStockStripes_SpreadsWhatIsNotHeldAroundTheMovedHolds() {
+        when(productStockStripeJdbcRepository.lockProduct(5L))
+            .thenReturn(new ProductStockStripeJdbcRepository.ProductStock(10, 0));
+        when(stockReservationJdbcRepository.moveHoldsToStripes(eq(5L), eq(2), any(LocalDateTime.class)))
+            .thenReturn(new int[] {3, 0});
+        when(productJdbcRepository.findByIds(List.of(5L))).thenReturn(List.of(
+            ProductResponse.builder().id(5L).sku("CON-001").stockQuantity(10).stockStripes(2).build()));
+
+        inventoryService.setStockStripes(5L, 2);
+
+        verify(stockReservationJdbcRepository).lockHolds(5L);
+        verify(productStockStripeJdbcRepository).replaceStripes(eq(5L), argThat(stripes ->
+            Arrays.equals(stripes.quantities(), new int[] {4, 3})
+                && Arrays.equals(stripes.held(), new int[] {3, 0})));
+        verify(productStockStripeJdbcRepository).updateProductStripes(eq(5L), eq(2), eq(10), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testSpread_GivesRemainderToLowestStripes() {
+        assertThat(InventoryService.spread(10, 4)).containsExactly(3, 3, 2, 2);
+        assertThat(InventoryService.spread(0, 3)).containsExactly(0, 0, 0);
+    }
+}
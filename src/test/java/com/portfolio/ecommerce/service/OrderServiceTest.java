@@ -0,0 +1,105 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.dto.OrderResponse;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.exception.InsufficientStockException;
+import com.portfolio.ecommerce.repository.OrderItemRepository;
+import com.portfolio.ecommerce.repository.OrderJdbcRepository;
+import com.portfolio.ecommerce.repository.OrderRepository;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository;
+import com.portfolio.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    @Mock
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    @Test
+    void testCreateOrderFromCart_ClaimsHoldsThenTakesStock() {
+        when(orderJdbcRepository.checkoutCart(eq(1L), any(BigDecimal.class), any(LocalDateTime.class)))
+            .thenReturn(Optional.of(checkedOut()));
+        Map<Long, StockReservationJdbcRepository.StripeHold> stripeHolds =
+            Map.of(2L, new StockReservationJdbcRepository.StripeHold(2L, 0, 2));
+        when(stockReservationService.claimAll(1L)).thenReturn(stripeHolds);
+
+        OrderResponse response = orderService.createOrderFromCart(1L);
+
+        InOrder inOrder = inOrder(stockReservationService, inventoryService);
+        inOrder.verify(stockReservationService).claimAll(1L);
+        inOrder.verify(inventoryService).decrementStock(Map.of(2L, 2, 7L, 1), 1L, stripeHolds);
+        assertThat(response.getId()).isEqualTo(5L);
+        assertThat(response.getItemCount()).isEqualTo(2);
+        assertThat(response.getTotalPrice()).isEqualByComparingTo("1122.00");
+        assertThat(response.getItems()).extracting("productName").containsExactly("Mouse", "Laptop");
+    }
+
+    @Test
+    void testCreateOrderFromCart_ShortagePropagatesSoTheOrderRollsBack() {
+        when(orderJdbcRepository.checkoutCart(eq(1L), any(BigDecimal.class), any(LocalDateTime.class)))
+            .thenReturn(Optional.of(checkedOut()));
+        doThrow(new InsufficientStockException(List.of(new InsufficientStockException.Shortage(7L, "LAP-001", 1, 0))))
+            .when(inventoryService).decrementStock(any(), eq(1L), any());
+
+        assertThatThrownBy(() -> orderService.createOrderFromCart(1L))
+            .isInstanceOf(InsufficientStockException.class)
+            .hasMessageContaining("LAP-001");
+
+        verify(stockReservationService).claimAll(1L);
+    }
+
+    @Test
+    void testCreateOrderFromCart_EmptyCartIsBadRequest() {
+        when(orderJdbcRepository.checkoutCart(eq(1L), any(BigDecimal.class), any(LocalDateTime.class)))
+            .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> orderService.createOrderFromCart(1L))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("empty cart");
+
+        verifyNoInteractions(stockReservationService, inventoryService);
+    }
+
+    private OrderJdbcRepository.CheckedOutOrder checkedOut() {
+        return new OrderJdbcRepository.CheckedOutOrder(5L, new BigDecimal("1020.00"), new BigDecimal("102.00"),
+            new BigDecimal("1122.00"), LocalDateTime.now(), List.of(
+                new OrderJdbcRepository.Line(11L, 2L, "Mouse", null, 2, new BigDecimal("10.00"), new BigDecimal("20.00")),
+                new OrderJdbcRepository.Line(12L, 7L, "Laptop", null, 1, new BigDecimal("1000.00"), new BigDecimal("1000.00"))));
+    }
+}
@@ -0,0 +1,74 @@
+package com.portfolio.ecommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolio.ecommerce.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductImportReaderTest {
+
+    @Test
+    void testCsv_ParsesQuotedFieldsAndTracksLines() throws IOException {
+        ProductImportReader reader = ProductImportReader.csv(body(
+            "name,description,price,stock_quantity,sku,category_id\n"
+                + "\"Laptop, 15\"\"\",\"Fast\nand light\",899.99,5,LAP-001,1\n"
+                + "Mouse,,19.99,10,,2\n"));
+
+        ProductImportReader.Row laptop = reader.next();
+        ProductImportReader.Row mouse = reader.next();
+
+        assertThat(laptop.line()).isEqualTo(2L);
+        assertThat(laptop.request().getName()).isEqualTo("Laptop, 15\"");
+        assertThat(laptop.request().getDescription()).isEqualTo("Fast\nand light");
+        assertThat(laptop.request().getPrice()).isEqualByComparingTo(new BigDecimal("899.99"));
+        assertThat(mouse.line()).isEqualTo(4L);
+        assertThat(mouse.request().getSku()).isNull();
+        assertThat(mouse.request().getActive()).isTrue();
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void testCsv_ReportsUnparseableRow() throws IOException {
+        ProductImportReader reader = ProductImportReader.csv(body(
+            "name,price,stockQuantity,categoryId\nLaptop,cheap,5,1\n"));
+
+        ProductImportReader.Row row = reader.next();
+
+        assertThat(row.request()).isNull();
+        assertThat(row.error()).isEqualTo("Invalid price: cheap");
+    }
+
+    @Test
+    void testCsv_RequiresHeaderColumns() {
+        assertThatThrownBy(() -> ProductImportReader.csv(body("name,price\n")))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("stockquantity");
+    }
+
+    @Test
+    void testNdjson_SkipsBlankLinesAndReportsMalformedOnes() throws IOException {
+        ProductImportReader reader = ProductImportReader.ndjson(body(
+            "{\"name\":\"Laptop\",\"price\":899.99,\"stockQuantity\":5,\"categoryId\":1}\n\n{oops\n"),
+            new ObjectMapper());
+
+        ProductImportReader.Row laptop = reader.next();
+        ProductImportReader.Row broken = reader.next();
+
+        assertThat(laptop.request().getName()).isEqualTo("Laptop");
+        assertThat(broken.line()).isEqualTo(3L);
+        assertThat(broken.error()).startsWith("Malformed JSON");
+        assertThat(reader.next()).isNull();
+    }
+
+    private InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,29 +1,46 @@
 package com.portfolio.ecommerce.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolio.ecommerce.catalog.ProductFacetSnapshot;
+import com.portfolio.ecommerce.catalog.ProductSearchIndex;
+import com.portfolio.ecommerce.catalog.ProductSuggester;
+import com.portfolio.ecommerce.dto.ProductLookupResponse;
 import com.portfolio.ecommerce.dto.ProductRequest;
 import com.portfolio.ecommerce.dto.ProductResponse;
+import com.portfolio.ecommerce.event.ProductChangedEvent;
 import com.portfolio.ecommerce.exception.BadRequestException;
 import com.portfolio.ecommerce.exception.ResourceNotFoundException;
 import com.portfolio.ecommerce.model.Category;
 import com.portfolio.ecommerce.model.Product;
 import com.portfolio.ecommerce.repository.CategoryRepository;
 import com.portfolio.ecommerce.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +52,27 @@ class ProductServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ProductSuggester productSuggester;
+
+    @Mock
+    private ProductFacetSnapshot productFacetSnapshot;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CacheManager cacheManager;
+
     @InjectMocks
     private ProductService productService;
 
@@ -75,46 +113,47 @@ class ProductServiceTest {
 
     @Test
     void testGetAllProducts() {
-        when(productRepository.findAll()).thenReturn(Arrays.asList(product));
+        when(productRepository.findAllWithCategory()).thenReturn(Arrays.asList(product));
 
         List<ProductResponse> result = productService.getAllProducts();
 
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getName()).isEqualTo("Laptop");
-        verify(productRepository).findAll();
+        assertThat(result.get(0).getCategoryName()).isEqualTo("Electronics");
+        verify(productRepository).findAllWithCategory();
     }
 
     @Test
     void testGetActiveProducts() {
-        when(productRepository.findByActiveTrue()).thenReturn(Arrays.asList(product));
+        when(productRepository.findActiveWithCategory()).thenReturn(Arrays.asList(product));
 
         List<ProductResponse> result = productService.getActiveProducts();
 
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getActive()).isTrue();
-        verify(productRepository).findByActiveTrue();
+        verify(productRepository).findActiveWithCategory();
     }
 
     @Test
     void testGetProductById_Success() {
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findWithCategoryById(1L)).thenReturn(Optional.of(product));
 
         ProductResponse result = productService.getProductById(1L);
 
         assertThat(result).isNotNull();
         assertThat(result.getName()).isEqualTo("Laptop");
-        verify(productRepository).findById(1L);
+        verify(productRepository).findWithCategoryById(1L);
     }
 
     @Test
     void testGetProductById_NotFound() {
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+        when(productRepository.findWithCategoryById(1L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> productService.getProductById(1L))
             .isInstanceOf(ResourceNotFoundException.class)
             .hasMessageContaining("Product not found");
 
-        verify(productRepository).findById(1L);
+        verify(productRepository).findWithCategoryById(1L);
     }
 
     @Test
@@ -128,6 +167,8 @@ class ProductServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getName()).isEqualTo("Laptop");
         verify(productRepository).save(any(Product.class));
+        verify(categoryRepository).adjustProductCount(1L, 1);
+        verify(eventPublisher).publishEvent(any(ProductChangedEvent.class));
     }
 
     @Test
@@ -157,12 +198,28 @@ class ProductServiceTest {
     void testUpdateProduct_Success() {
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
         when(categoryRepository.findById(1L)).thenReturn(Optional.of(category));
-        when(productRepository.save(any(Product.class))).thenReturn(product);
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
 
         ProductResponse result = productService.updateProduct(1L, productRequest);
 
         assertThat(result).isNotNull();
-        verify(productRepository).save(any(Product.class));
+        verify(productRepository).saveAndFlush(any(Product.class));
+        verify(categoryRepository, never()).adjustProductCount(any(), anyInt());
+    }
+
+    @Test
+    void testUpdateProduct_MovingCategoryMovesCount() {
+        Category books = Category.builder().id(2L).name("Books").active(true).build();
+        productRequest.setCategoryId(2L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(categoryRepository.findById(2L)).thenReturn(Optional.of(books));
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(product);
+
+        productService.updateProduct(1L, productRequest);
+
+        InOrder inOrder = inOrder(categoryRepository);
+        inOrder.verify(categoryRepository).adjustProductCount(1L, -1);
+        inOrder.verify(categoryRepository).adjustProductCount(2L, 1);
     }
 
     @Test
@@ -172,6 +229,8 @@ class ProductServiceTest {
         productService.deleteProduct(1L);
 
         verify(productRepository).delete(product);
+        verify(categoryRepository).adjustProductCount(1L, -1);
+        verify(eventPublisher).publishEvent(any(ProductChangedEvent.class));
     }
 
     @Test
@@ -186,12 +245,57 @@ class ProductServiceTest {
 
     @Test
     void testSearchProducts() {
-        when(productRepository.searchByName("Laptop")).thenReturn(Arrays.asList(product));
+        ProductResponse laptop = ProductResponse.builder().id(1L).name("Laptop").active(true).build();
+        when(productSearchIndex.search(eq("Laptop"), eq(ProductSearchIndex.Operator.AND), anyInt()))
+            .thenReturn(List.of(laptop));
 
         List<ProductResponse> result = productService.searchProducts("Laptop");
 
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getName()).contains("Laptop");
-        verify(productRepository).searchByName("Laptop");
+        verify(productRepository, never()).searchByName(anyString());
+    }
+
+    @Test
+    void testSearchProducts_InvalidOperator() {
+        assertThatThrownBy(() -> productService.searchProducts("Laptop", "xor", null))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("operator");
+    }
+
+    @Test
+    void testExportProducts_CsvDetachesEachRow() throws Exception {
+        product.setDescription("Fast, \"quiet\" laptop");
+        when(productRepository.streamForExport(false)).thenReturn(Stream.of(product));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        productService.exportProducts(ProductExportFormat.CSV, false, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[1]).startsWith("1,Laptop,\"Fast, \"\"quiet\"\" laptop\",999.99,10,LAP-001,1,Electronics,");
+        verify(entityManager).detach(product);
+    }
+
+    @Test
+    void testGetProductsByIds_MixesCacheAndDatabaseInRequestOrder() {
+        ConcurrentMapCache cache = new ConcurrentMapCache("products");
+        ProductResponse mouse = ProductResponse.builder().id(2L).name("Mouse").build();
+        cache.put(2L, mouse);
+        when(cacheManager.getCache("products")).thenReturn(cache);
+        when(productRepository.findAllWithCategoryByIdIn(Set.of(1L, 99L))).thenReturn(List.of(product));
+
+        List<ProductLookupResponse> results = productService.getProductsByIds(List.of(2L, 1L, 99L));
+
+        assertThat(results).extracting(ProductLookupResponse::getId).containsExactly(2L, 1L, 99L);
+        assertThat(results).extracting(ProductLookupResponse::getFound).containsExactly(true, true, false);
+        assertThat(results.get(0).getProduct()).isSameAs(mouse);
+        assertThat(cache.get(1L, ProductResponse.class).getName()).isEqualTo("Laptop");
+    }
+
+    @Test
+    void testGetProductsByIds_RejectsEmptyRequest() {
+        assertThatThrownBy(() -> productService.getProductsByIds(List.of()))
+            .isInstanceOf(BadRequestException.class);
     }
 }
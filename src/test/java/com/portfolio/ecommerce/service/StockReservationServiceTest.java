@@ -0,0 +1,82 @@
+package com.portfolio.ecommerce.service;
+
+import com.portfolio.ecommerce.exception.BadRequestException;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository;
+import com.portfolio.ecommerce.repository.StockReservationJdbcRepository.StripeHold;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceTest {
+
+    @Mock
+    private StockReservationJdbcRepository stockReservationJdbcRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    private StockReservationService stockReservationService;
+
+    @BeforeEach
+    void setUp() {
+        stockReservationService = new StockReservationService(stockReservationJdbcRepository, inventoryService,
+            Duration.ofMinutes(15));
+    }
+
+    @Test
+    void testReserve_HoldsAgainstTheProductRow() {
+        when(stockReservationJdbcRepository.lockAvailable(eq(2L), eq(1L), any(LocalDateTime.class))).thenReturn(5);
+
+        stockReservationService.reserve(1L, 2L, 3, false);
+
+        verify(stockReservationJdbcRepository).upsertHold(eq(1L), eq(2L), eq(3), any(LocalDateTime.class), isNull());
+        verifyNoInteractions(inventoryService);
+    }
+
+    @Test
+    void testReserve_RejectsMoreThanOthersLeaveUnlessPartial() {
+        when(stockReservationJdbcRepository.lockAvailable(eq(2L), eq(1L), any(LocalDateTime.class))).thenReturn(2);
+
+        assertThatThrownBy(() -> stockReservationService.reserve(1L, 2L, 3, false))
+            .isInstanceOf(BadRequestException.class)
+            .hasMessageContaining("Available: 2");
+        stockReservationService.reserve(1L, 2L, 3, true);
+
+        verify(stockReservationJdbcRepository).upsertHold(eq(1L), eq(2L), eq(2), any(LocalDateTime.class), isNull());
+    }
+
+    @Test
+    void testReserve_HoldsStripedProductOnAStripeInPlaceOfThePreviousHold() {
+        StripeHold previous = new StripeHold(5L, 3, 1);
+        when(stockReservationJdbcRepository.lockAvailable(eq(5L), eq(1L), any(LocalDateTime.class))).thenReturn(null);
+        when(stockReservationJdbcRepository.takeHold(1L, 5L)).thenReturn(previous);
+        when(inventoryService.holdOnStripes(5L, 2, false, previous)).thenReturn(new StripeHold(5L, 3, 2));
+
+        stockReservationService.reserve(1L, 5L, 2, false);
+
+        verify(stockReservationJdbcRepository).upsertHold(eq(1L), eq(5L), eq(2), any(LocalDateTime.class), eq(3));
+    }
+
+    @Test
+    void testReserve_StoresNoHoldWhenNothingOnTheStripesWasHeld() {
+        when(stockReservationJdbcRepository.lockAvailable(eq(5L), eq(1L), any(LocalDateTime.class))).thenReturn(null);
+        when(inventoryService.holdOnStripes(5L, 2, true, null)).thenReturn(null);
+
+        stockReservationService.reserve(1L, 5L, 2, true);
+
+        verify(stockReservationJdbcRepository).takeHold(1L, 5L);
+        verify(stockReservationJdbcRepository, never()).upsertHold(any(), any(), anyInt(), any(), any());
+    }
+}
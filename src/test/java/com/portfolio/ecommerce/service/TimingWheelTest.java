@@ -0,0 +1,48 @@
+package com.portfolio.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    @Test
+    void testAdvance_ReleasesItemsOnTheirTickAcrossLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(Duration.ofSeconds(1), 4, 3, START);
+        wheel.schedule("soon", START + 2_000);
+        wheel.schedule("next-level", START + 9_000);
+        wheel.schedule("top-level", START + 40_000);
+
+        assertThat(wheel.advance(START + 1_000)).isEmpty();
+        assertThat(wheel.advance(START + 2_000)).containsExactly("soon");
+        assertThat(wheel.advance(START + 8_999)).isEmpty();
+        assertThat(wheel.advance(START + 9_000)).containsExactly("next-level");
+        assertThat(wheel.advance(START + 39_000)).isEmpty();
+        assertThat(wheel.advance(START + 40_000)).containsExactly("top-level");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testSchedule_RoundsUpAndReleasesOverdueItemsOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(Duration.ofSeconds(1), 4, 2, START);
+        wheel.schedule("partial-tick", START + 1_500);
+        wheel.schedule("overdue", START - 5_000);
+
+        assertThat(wheel.advance(START + 1_000)).containsExactly("overdue");
+        assertThat(wheel.advance(START + 2_000)).containsExactly("partial-tick");
+    }
+
+    @Test
+    void testSchedule_BeyondRangeIsParkedUntilDue() {
+        // Two levels of four one-second slots cover 16 seconds
+        TimingWheel<String> wheel = new TimingWheel<>(Duration.ofSeconds(1), 4, 2, START);
+        wheel.schedule("far", START + 50_000);
+
+        assertThat(wheel.advance(START + 49_000)).isEmpty();
+        assertThat(wheel.advance(START + 50_000)).containsExactly("far");
+    }
+}